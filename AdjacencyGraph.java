@@ -1,46 +1,253 @@
 // AdjacencyService.java
 
-import java.util.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
 
 /**
- * Builds an “adjacency” list for each country by selecting the k nearest
- * centroids (as a proxy for land borders).
+ * Immutable “adjacency” graph between countries in compressed sparse row
+ * form: the neighbors of i are targets[offsets[i] .. offsets[i+1]).
+ *
+ * Built either from the k nearest centroids (as a proxy for land borders,
+ * {@link #build}) or from a list of true land borders ({@link #fromBorders}).
+ * Edges are directed; a k-nearest graph need not be symmetric.
+ *
+ * {@link #isAdjacent} is a single bit test against a per-row bitset while
+ * n² bits stay small; larger graphs binary-search a sorted copy of the row.
  */
-public class AdjacencyGraph {
+public final class AdjacencyGraph {
+    /** Largest n for which per-row bitsets are kept (n² bits = 32 MB). */
+    private static final int DENSE_LIMIT = 1 << 14;
+
+    private final int n;
+    private final int[] offsets;
+    private final int[] targets;
+    /** Row i occupies words [i * words, (i + 1) * words); null above DENSE_LIMIT. */
+    private final long[] rowBits;
+    private final int words;
+    /** targets with every row sorted ascending; only kept when rowBits is null. */
+    private final int[] sorted;
 
     /**
-     * For each country index i in [0..n), finds the k nearest neighbor indices.
+     * @param offsets n + 1 non-decreasing row offsets, offsets[0] = 0
+     * @param targets neighbor indices in [0, n), row by row
+     */
+    AdjacencyGraph(int[] offsets, int[] targets) {
+        int n = offsets.length - 1;
+        if (n < 0 || offsets[0] != 0 || offsets[n] != targets.length) {
+            throw new IllegalArgumentException("Malformed CSR offsets");
+        }
+        for (int i = 0; i < n; i++) {
+            if (offsets[i] > offsets[i + 1]) throw new IllegalArgumentException("Offsets decrease at row " + i);
+        }
+        for (int t : targets) {
+            if (t < 0 || t >= n) throw new IllegalArgumentException("Neighbor out of range: " + t);
+        }
+        this.n       = n;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.words   = (n + 63) >>> 6;
+        if (n <= DENSE_LIMIT) {
+            this.rowBits = new long[n * words];
+            for (int i = 0; i < n; i++) {
+                for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                    rowBits[i * words + (targets[e] >>> 6)] |= 1L << targets[e];
+                }
+            }
+            this.sorted = null;
+        } else {
+            this.rowBits = null;
+            this.sorted  = targets.clone();
+            for (int i = 0; i < n; i++) Arrays.sort(sorted, offsets[i], offsets[i + 1]);
+        }
+    }
+
+    /**
+     * For each country index i in [0..n), finds the k nearest neighbor indices
+     * with a {@link SpatialIndex}, querying countries in parallel.
      *
      * @param countries the ordered list of countries
-     * @param D         the DistanceMatrix giving inter-country distances in km
      * @param k         how many nearest neighbors to treat as “adjacent”
-     * @return a List of size n, where element i is the Set of k nearest neighbor indices of i
+     * @return a graph in which row i holds the k nearest neighbor indices of i, nearest first
      */
-    public static List<Set<Integer>> build(List<Country> countries,
-                                           DistanceMatrix D,
-                                           int k) {
+    public static AdjacencyGraph build(List<Country> countries, int k) {
         int n = countries.size();
-        List<Set<Integer>> adjacency = new ArrayList<>(n);
+        int degree = Math.min(k, Math.max(0, n - 1));
+        SpatialIndex index = new SpatialIndex(countries);
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i <= n; i++) offsets[i] = i * degree;
+        int[] targets = new int[n * degree];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int[] nbrs = new int[degree];
+            index.nearest(i, degree, nbrs, new double[degree]);
+            System.arraycopy(nbrs, 0, targets, i * degree, degree);
+        });
+        return new AdjacencyGraph(offsets, targets);
+    }
 
-        for (int i = 0; i < n; i++) {
-            // Min-heap of (countryIndex, distance) for all j != i
-            PriorityQueue<Map.Entry<Integer, Double>> pq =
-                    new PriorityQueue<>(Comparator.comparingDouble(Map.Entry::getValue));
-
-            for (int j = 0; j < n; j++) {
-                if (j == i) continue;
-                double dist = D.get(i, j);
-                pq.add(new AbstractMap.SimpleEntry<>(j, dist));
+    /**
+     * Builds a graph from explicit neighbor lists.
+     *
+     * @param rows rows[i] holds the neighbors of i
+     */
+    public static AdjacencyGraph fromRows(int[][] rows) {
+        int[] offsets = new int[rows.length + 1];
+        for (int i = 0; i < rows.length; i++) offsets[i + 1] = offsets[i] + rows[i].length;
+        int[] targets = new int[offsets[rows.length]];
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(rows[i], 0, targets, offsets[i], rows[i].length);
+        }
+        return new AdjacencyGraph(offsets, targets);
+    }
+
+    /**
+     * Loads true land borders from a CSV whose first two columns name two
+     * bordering countries (e.g. "France,Spain"). Every border is added in
+     * both directions; duplicates and self-loops are dropped. Rows naming a
+     * country the resolver does not know, such as a header, are skipped.
+     *
+     * @param csvPath border list
+     * @param n       number of countries
+     * @param indexOf maps a name from the file to a country index, or -1
+     */
+    public static AdjacencyGraph fromBorders(Path csvPath, int n, ToIntFunction<String> indexOf) throws IOException {
+        long[] edges = new long[64];
+        int count = 0;
+        try (BufferedReader br = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8)) {
+            String line;
+            String[] pair = new String[2];
+            while ((line = br.readLine()) != null) {
+                if (firstTwoFields(line, pair) < 2) continue;
+                int a = indexOf.applyAsInt(pair[0]);
+                int b = indexOf.applyAsInt(pair[1]);
+                if (a < 0 || b < 0 || a == b) continue;
+                if (count + 2 > edges.length) edges = Arrays.copyOf(edges, edges.length * 2);
+                edges[count++] = ((long) a << 32) | b;
+                edges[count++] = ((long) b << 32) | a;
             }
+        }
+        // Sort (from, to) pairs so each row is contiguous, then drop repeats
+        Arrays.sort(edges, 0, count);
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[count];
+        int m = 0;
+        for (int e = 0; e < count; e++) {
+            if (e > 0 && edges[e] == edges[e - 1]) continue;
+            int from = (int) (edges[e] >>> 32);
+            if (from >= n) throw new IllegalArgumentException("Country index out of range: " + from);
+            offsets[from + 1]++;
+            targets[m++] = (int) edges[e];
+        }
+        for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+        return new AdjacencyGraph(offsets, Arrays.copyOf(targets, m));
+    }
 
-            // Take the top k closest
-            Set<Integer> nbrs = new LinkedHashSet<>();
-            for (int cnt = 0; cnt < k && !pq.isEmpty(); cnt++) {
-                nbrs.add(pq.poll().getKey());
+    /** Splits the first two comma-separated fields of a CSV line, honoring double quotes. */
+    private static int firstTwoFields(String line, String[] out) {
+        int found = 0, i = 0, len = line.length();
+        StringBuilder field = new StringBuilder();
+        while (found < 2 && i <= len) {
+            field.setLength(0);
+            if (i < len && line.charAt(i) == '"') {
+                for (i++; i < len; i++) {
+                    char c = line.charAt(i);
+                    if (c == '"') {
+                        if (i + 1 < len && line.charAt(i + 1) == '"') { field.append('"'); i++; }
+                        else { i++; break; }
+                    } else {
+                        field.append(c);
+                    }
+                }
             }
-            adjacency.add(nbrs);
+            while (i < len && line.charAt(i) != ',') field.append(line.charAt(i++));
+            out[found++] = field.toString().trim();
+            i++;
         }
+        return found;
+    }
+
+    /** @return the number of countries */
+    public int size() {
+        return n;
+    }
+
+    /** @return the total number of directed edges */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /** @return the number of neighbors of i */
+    public int degree(int i) {
+        return offsets[i + 1] - offsets[i];
+    }
+
+    /** @return the r-th neighbor of i, in the order the graph was built (nearest first for {@link #build}) */
+    public int neighbor(int i, int r) {
+        if (r < 0 || r >= degree(i)) throw new IndexOutOfBoundsException(r);
+        return targets[offsets[i] + r];
+    }
+
+    /** @return true if j is one of i's neighbors */
+    public boolean isAdjacent(int i, int j) {
+        if (j < 0 || j >= n) return false;
+        if (rowBits != null) {
+            return (rowBits[i * words + (j >>> 6)] & (1L << j)) != 0;
+        }
+        return Arrays.binarySearch(sorted, offsets[i], offsets[i + 1], j) >= 0;
+    }
+
+    /**
+     * Collects every country reachable from src in 1..hops steps, breadth
+     * first (src itself is excluded). Allocation-free: out doubles as the
+     * BFS queue.
+     *
+     * @param src  starting country
+     * @param hops maximum number of steps
+     * @param out  receives the reached indices, nearer hops first; length ≥ n
+     * @param seen scratch bitset of (n + 63) / 64 words, all zero on entry; left all zero on return
+     * @return the number of indices written to out
+     */
+    public int neighborhood(int src, int hops, int[] out, long[] seen) {
+        if (hops <= 0) return 0;
+        seen[src >>> 6] |= 1L << src;
+        int tail = expand(src, out, 0, seen);
+        // out[levelStart..levelEnd) holds the countries first reached on the previous hop
+        for (int hop = 1, levelStart = 0; hop < hops && levelStart < tail; hop++) {
+            int levelEnd = tail;
+            for (int q = levelStart; q < levelEnd; q++) tail = expand(out[q], out, tail, seen);
+            levelStart = levelEnd;
+        }
+        seen[src >>> 6] &= ~(1L << src);
+        for (int i = 0; i < tail; i++) seen[out[i] >>> 6] &= ~(1L << out[i]);
+        return tail;
+    }
+
+    /** Appends u's unseen neighbors to out[tail..] and marks them seen; returns the new tail. */
+    private int expand(int u, int[] out, int tail, long[] seen) {
+        for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+            int v = targets[e];
+            long bit = 1L << v;
+            if ((seen[v >>> 6] & bit) == 0) {
+                seen[v >>> 6] |= bit;
+                out[tail++] = v;
+            }
+        }
+        return tail;
+    }
+
+    /** CSR row offset of i, for serialization. */
+    int offset(int i) {
+        return offsets[i];
+    }
 
-        return adjacency;
+    /** The e-th entry of the CSR target array, for serialization. */
+    int target(int e) {
+        return targets[e];
     }
 }
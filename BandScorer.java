@@ -0,0 +1,214 @@
+// BandScorer.java
+
+/**
+ * Scores a guess by the candidate sets {@link CandidateManager#applyFeedback}
+ * would actually leave, for ranking guesses from outside the candidate set.
+ *
+ * Feedback codes split the candidates by redness, but the filter does not:
+ * a reading that is not a new best only drops the candidates that would
+ * have read closer, and an “adjacent” reading keeps every neighbor. Entropy
+ * over codes therefore overrates guesses far from the candidates. Instead,
+ * the score is the expected drop in log2 of the candidate mass,
+ * log2 W − Σ_t (w_t / W) log2 W_t, where W_t is the mass left if t is the
+ * target; with unit weights and disjoint sets it is exactly the entropy.
+ *
+ * A guess costs one walk over its sorted {@link DistanceIndex} row, with
+ * two monotone pointers tracking each target's ±tolerance band.
+ * {@link #bound} caps the score in one pass over the candidates alone, so
+ * most guesses from outside the set are never walked. Not thread-safe; one
+ * instance per thread.
+ */
+public class BandScorer {
+    private static final double KM_PER_MILE = 1.60934;
+    /** {@link #bound} looks candidates up directly below 1/SPARSE_RATIO of n, else walks the row. */
+    private static final int SPARSE_RATIO = 4;
+
+    private final DistanceIndex index;
+    private final DistanceMatrix D;
+    private final AdjacencyGraph adj;
+    private final double toleranceMiles;
+    /** Scratch: distance (km) of each candidate from the guess, ascending. */
+    private final double[] dist;
+    /** Scratch: prefix sums of the candidates' weights, in the same order. */
+    private final double[] mass;
+    /** Scratch: whether each candidate is adjacent to the guess. */
+    private final boolean[] near;
+    /** Scratch: weight of each candidate, in the same order. */
+    private final double[] own;
+    /** Scratch for {@link #bound}: candidate mass per distance bin, offset by one. */
+    private final double[] binMass;
+    /** Scratch for {@link #bound}: mass of the targets that would read as a new best, per bin. */
+    private final double[] binTargets;
+    /** Scratch for {@link #bound}: the bins holding mass, for clearing. */
+    private final int[] touched;
+    /** Half the band, shrunk slightly so three bins fit inside it despite rounding. */
+    private final double binWidth;
+    /** {@link #bound} accumulators: candidate mass, and target mass by the set each would leave. */
+    private double total, adjacent, notCloser, notCloserLeft;
+    private int bins;
+
+    /**
+     * @param index          sorted distance rows
+     * @param D              the distances index was built from (km)
+     * @param adj            adjacency graph
+     * @param toleranceMiles ±band CandidateManager accepts new best readings with
+     */
+    public BandScorer(DistanceIndex index, DistanceMatrix D, AdjacencyGraph adj, double toleranceMiles) {
+        int n = index.size();
+        this.index          = index;
+        this.D              = D;
+        this.adj            = adj;
+        this.toleranceMiles = toleranceMiles;
+        this.dist           = new double[n];
+        this.mass           = new double[n + 1];
+        this.near           = new boolean[n];
+        this.own            = new double[n];
+        double farthest = 0;
+        for (int g = 0; g < n; g++) farthest = Math.max(farthest, index.distanceAt(g, n - 1));
+        this.binWidth       = toleranceMiles * KM_PER_MILE * 0.5 * (1 - 1e-6);
+        int bins = (int) (farthest / binWidth) + 3;
+        this.binMass        = new double[bins];
+        this.binTargets     = new double[bins];
+        this.touched        = new int[bins];
+    }
+
+    /**
+     * @param g         the guess
+     * @param mgr       the position; its candidates are the possible targets
+     * @param weights   per-country target weights, or null for uniform
+     * @param bestMiles the best distance reading so far
+     * @return the expected reduction in log2 of the candidate mass (bits)
+     */
+    public double score(int g, CandidateManager mgr, float[] weights, double bestMiles) {
+        if (Metrics.enabled()) Metrics.SCORE_CALLS.increment();
+        if (mgr.candidateCount() <= 1) return 0.0;
+        // The candidates other than g, nearest first
+        int n = index.size();
+        int m = 0;
+        for (int r = 0; r < n; r++) {
+            int c = index.at(g, r);
+            if (c == g || !mgr.isCandidate(c)) continue;
+            dist[m] = index.distanceAt(g, r);
+            near[m] = adj.isAdjacent(g, c);
+            own[m]  = weights == null ? 1.0 : weights[c];
+            mass[m + 1] = mass[m] + own[m];
+            m++;
+        }
+        double total = mass[m];
+        if (mgr.isCandidate(g)) total += weights == null ? 1.0 : weights[g]; // solved: nothing left to learn
+        if (total <= 0) return 0.0;
+
+        // An adjacent reading keeps every neighbor, candidate or not
+        double neighbors = neighborMass(g, weights);
+        // A reading that is no new best keeps everything at least (best − tolerance) away
+        double notCloser = mass[m] - mass[lowerBound(m, (bestMiles - toleranceMiles) * KM_PER_MILE)];
+
+        double tolKm = toleranceMiles * KM_PER_MILE;
+        double sum = 0.0;
+        int lo = 0, hi = 0;
+        for (int i = 0; i < m; i++) {
+            if (own[i] == 0) continue;
+            double d = dist[i];
+            double left;
+            if (near[i]) {
+                left = neighbors;
+            } else if (d / KM_PER_MILE < bestMiles) {
+                while (dist[lo] < d - tolKm) lo++;
+                while (hi < m && dist[hi] <= d + tolKm) hi++;
+                left = mass[hi] - mass[lo];
+            } else {
+                left = notCloser;
+            }
+            sum += own[i] * log2(left);
+        }
+        return log2(total) - sum / total;
+    }
+
+    /**
+     * Upper bound on {@link #score} from one pass over the candidates, with
+     * no sorting and no per-target logarithm. The neighbor and not-closer
+     * sets are summed exactly; a target inside the best reading keeps at
+     * least the half-tolerance distance bins on either side of its own,
+     * since its ±tolerance band covers them, so the mass of those three bins
+     * stands in for its band.
+     *
+     * @param mgr        the position; its candidates are the possible targets
+     * @param candidates the same candidates as indices; only the first count entries are read
+     * @param count      number of candidates
+     */
+    public double bound(int g, CandidateManager mgr, int[] candidates, int count,
+                        float[] weights, double bestMiles) {
+        if (count <= 1) return 0.0;
+        total = adjacent = notCloser = notCloserLeft = 0;
+        bins = 0;
+        if ((long) count * SPARSE_RATIO < index.size()) {
+            for (int i = 0; i < count; i++) {
+                int c = candidates[i];
+                // Rounded as in the index rows score walks
+                tally(g, c, (float) D.get(g, c), weights, bestMiles);
+            }
+        } else {
+            for (int r = 0, n = index.size(); r < n; r++) {
+                int c = index.at(g, r);
+                if (mgr.isCandidate(c)) tally(g, c, index.distanceAt(g, r), weights, bestMiles);
+            }
+        }
+        if (total <= 0) return 0.0;
+        double sum = 0;
+        if (adjacent > 0) sum += adjacent * log2(neighborMass(g, weights));
+        if (notCloser > 0) sum += notCloser * log2(notCloserLeft);
+        for (int i = 0; i < bins; i++) {
+            int b = touched[i];
+            if (binTargets[b] > 0) sum += binTargets[b] * log2(binMass[b - 1] + binMass[b] + binMass[b + 1]);
+        }
+        for (int i = 0; i < bins; i++) {
+            binMass[touched[i]] = 0;
+            binTargets[touched[i]] = 0;
+        }
+        // Slack for rounding where the bound is exact
+        return log2(total) - sum / total + 1e-9;
+    }
+
+    /** Adds candidate c, at d km from g, to the {@link #bound} accumulators. */
+    private void tally(int g, int c, double d, float[] weights, double bestMiles) {
+        double w = weights == null ? 1.0 : weights[c];
+        total += w;
+        if (c == g || w == 0) return;
+        if (d >= (bestMiles - toleranceMiles) * KM_PER_MILE) notCloserLeft += w;
+        int b = (int) (d / binWidth) + 1;
+        if (binMass[b] == 0 && binTargets[b] == 0) touched[bins++] = b;
+        binMass[b] += w;
+        if (adj.isAdjacent(g, c)) {
+            adjacent += w;
+        } else if (d / KM_PER_MILE < bestMiles) {
+            binTargets[b] += w;
+        } else {
+            notCloser += w;
+        }
+    }
+
+    /** @return the weight an adjacent reading keeps: every neighbor of g, candidate or not */
+    private double neighborMass(int g, float[] weights) {
+        double neighbors = 0;
+        for (int r = 0, deg = adj.degree(g); r < deg; r++) {
+            int nb = adj.neighbor(g, r);
+            if (nb == g) continue;
+            neighbors += weights == null ? 1.0 : weights[nb];
+        }
+        return neighbors;
+    }
+
+    /** @return the first of the m sorted distances that is ≥ km (m if none) */
+    private int lowerBound(int m, double km) {
+        int lo = 0, hi = m;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dist[mid] < km) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) * (1.0 / Math.log(2.0));
+    }
+}
@@ -5,64 +5,157 @@ import java.util.*;
 /**
  * Manages the set of possible target countries, applies user feedback to
  * filter candidates, and supports backtracking.
+ *
+ * Candidates and guesses are kept as primitive bitsets (one bit per country
+ * index, 64 per word) so that filtering and snapshots are word-wise passes.
+ * A Zobrist hash of both bitsets is updated with every bit that changes, so
+ * {@link #stateHash()} is O(1).
  */
-public class CandidateManager {
-    private Set<Integer> candidates;
-    private Set<Integer> guessed;
+public final class CandidateManager {
+    private final int n;
+    private final long[] candidates;
+    private final long[] guessed;
+    private int candidateCount;
     private double bestDistMiles;
+    /** XOR of candidateKey(i) over candidates and guessedKey(i) over guesses. */
+    private long hash;
     private final double toleranceMiles;
     private final double kmPerMile = 1.60934;
 
     private final DistanceMatrix D;
-    private final List<Set<Integer>> adjList;
+    private final AdjacencyGraph adjList;
+    /** Optional per-guess sorted rows; when present, distance filters walk ranges instead of scanning. */
+    private final DistanceIndex index;
+    private final long[] mask;
+    /** False for background positions (see {@link Speculator}), which record no metrics or events. */
+    private boolean recording = true;
 
-    private final Deque<State> history = new ArrayDeque<>();
+    /** Pooled snapshots; entries [0..depth) are live, the rest are reusable. */
+    private final List<State> history = new ArrayList<>();
+    private int depth;
 
     /**
-     * Snapshot of solver state for backtracking.
+     * Snapshot of solver state for backtracking. Instances are recycled,
+     * so a snapshot costs two O(n/64) word copies once the pool is warm.
      */
     private static class State {
-        final Set<Integer> candidates;
-        final Set<Integer> guessed;
-        final double bestDistMiles;
+        final long[] candidates;
+        final long[] guessed;
+        int candidateCount;
+        double bestDistMiles;
+        long hash;
 
-        State(Set<Integer> c, Set<Integer> g, double b) {
-            this.candidates    = new HashSet<>(c);
-            this.guessed       = new HashSet<>(g);
-            this.bestDistMiles = b;
+        State(int words) {
+            this.candidates = new long[words];
+            this.guessed    = new long[words];
         }
     }
 
     /**
      * @param n               number of countries (indices 0..n-1)
      * @param D               precomputed DistanceMatrix (km)
-     * @param adjList         adjacency lists by index
+     * @param adjList         adjacency graph
      * @param toleranceMiles  ±band for accepting new best-distance readings
      */
     public CandidateManager(int n,
                             DistanceMatrix D,
-                            List<Set<Integer>> adjList,
+                            AdjacencyGraph adjList,
                             double toleranceMiles) {
+        this(n, D, adjList, null, toleranceMiles);
+    }
+
+    /**
+     * @param n               number of countries (indices 0..n-1)
+     * @param D               precomputed DistanceMatrix (km)
+     * @param adjList         adjacency graph
+     * @param index           sorted distance rows for D, or null to filter by scanning
+     * @param toleranceMiles  ±band for accepting new best-distance readings
+     */
+    public CandidateManager(int n,
+                            DistanceMatrix D,
+                            AdjacencyGraph adjList,
+                            DistanceIndex index,
+                            double toleranceMiles) {
+        this.n               = n;
         this.D               = D;
         this.adjList         = adjList;
+        this.index           = index;
         this.toleranceMiles  = toleranceMiles;
-        this.candidates      = new HashSet<>();
-        for (int i = 0; i < n; i++) candidates.add(i);
-        this.guessed         = new HashSet<>();
-        this.bestDistMiles   = Double.MAX_VALUE;
+        this.candidates      = new long[(n + 63) >>> 6];
+        this.guessed         = new long[candidates.length];
+        this.mask            = index == null ? null : new long[candidates.length];
+        reset();
+    }
+
+    /** Returns to the initial state: every country a candidate, nothing guessed, no history. */
+    public void reset() {
+        Arrays.fill(candidates, -1L);
+        int tail = n & 63;
+        if (tail != 0) candidates[candidates.length - 1] = (1L << tail) - 1;
+        Arrays.fill(guessed, 0L);
+        candidateCount = n;
+        bestDistMiles  = Double.MAX_VALUE;
+        depth          = 0;
+        hash           = 0L;
+        for (int i = 0; i < n; i++) hash ^= candidateKey(i);
     }
 
     /** Save current state onto the history stack. */
     public void snapshot() {
-        history.push(new State(candidates, guessed, bestDistMiles));
+        State s;
+        if (depth < history.size()) {
+            s = history.get(depth);
+        } else {
+            s = new State(candidates.length);
+            history.add(s);
+        }
+        depth++;
+        System.arraycopy(candidates, 0, s.candidates, 0, candidates.length);
+        System.arraycopy(guessed, 0, s.guessed, 0, guessed.length);
+        s.candidateCount = candidateCount;
+        s.bestDistMiles  = bestDistMiles;
+        s.hash           = hash;
     }
 
     /** Restore the most recent saved state. */
     public void restore() {
-        State prev = history.pop();
-        this.candidates    = prev.candidates;
-        this.guessed       = prev.guessed;
-        this.bestDistMiles = prev.bestDistMiles;
+        if (depth == 0) {
+            throw new NoSuchElementException("No snapshot to restore");
+        }
+        State prev = history.get(--depth);
+        System.arraycopy(prev.candidates, 0, candidates, 0, candidates.length);
+        System.arraycopy(prev.guessed, 0, guessed, 0, guessed.length);
+        this.candidateCount = prev.candidateCount;
+        this.bestDistMiles  = prev.bestDistMiles;
+        this.hash           = prev.hash;
+    }
+
+    /**
+     * Takes over another manager's current position (not its history), e.g.
+     * to explore a branch without disturbing the live game.
+     *
+     * @param other a manager over the same countries
+     */
+    public void copyFrom(CandidateManager other) {
+        if (other.n != n) {
+            throw new IllegalArgumentException("Country count mismatch: " + other.n + " vs " + n);
+        }
+        System.arraycopy(other.candidates, 0, candidates, 0, candidates.length);
+        System.arraycopy(other.guessed, 0, guessed, 0, guessed.length);
+        candidateCount = other.candidateCount;
+        bestDistMiles  = other.bestDistMiles;
+        hash           = other.hash;
+        depth          = 0;
+    }
+
+    /** Turns metrics and JFR events for {@link #applyFeedback} on (the default) or off. */
+    void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /** @return true if there is a snapshot for {@link #restore()} to return to */
+    public boolean canRestore() {
+        return depth > 0;
     }
 
     /**
@@ -70,8 +163,8 @@ public class CandidateManager {
      * simply removes it from future consideration.
      */
     public void markImpossible(int idx) {
-        guessed.add(idx);
-        candidates.remove(idx);
+        markGuessed(idx);
+        removeCandidate(idx);
     }
 
     /**
@@ -83,15 +176,32 @@ public class CandidateManager {
      * @return true if at least one candidate remains; false if candidate set is empty
      */
     public boolean applyFeedback(int guessIdx, boolean isAdjacent, double distMiles) {
+        Metrics.FeedbackEvent event = recording && Metrics.FEEDBACK_EVENT.isEnabled()
+                ? new Metrics.FeedbackEvent() : null;
+        if (event != null) event.begin();
+        int before = candidateCount;
+
         // Mark guessed and remove from candidates
-        guessed.add(guessIdx);
-        candidates.remove(guessIdx);
+        markGuessed(guessIdx);
+        removeCandidate(guessIdx);
 
         if (isAdjacent) {
             // Adjacency: keep only true neighbors
-            Set<Integer> nbrs = new HashSet<>(adjList.get(guessIdx));
-            nbrs.remove(guessIdx);
-            candidates = nbrs;
+            for (int w = 0; w < candidates.length; w++) {
+                unhashCandidates(w, candidates[w]);
+                candidates[w] = 0L;
+            }
+            candidateCount = 0;
+            for (int r = 0, deg = adjList.degree(guessIdx); r < deg; r++) {
+                int nb = adjList.neighbor(guessIdx, r);
+                if (nb == guessIdx) continue;
+                long bit = 1L << nb;
+                if ((candidates[nb >>> 6] & bit) == 0) {
+                    candidates[nb >>> 6] |= bit;
+                    candidateCount++;
+                    hash ^= candidateKey(nb);
+                }
+            }
         } else {
             // Distance feedback
             if (distMiles < bestDistMiles) {
@@ -99,33 +209,224 @@ public class CandidateManager {
                 bestDistMiles = distMiles;
                 double targetKm = distMiles * kmPerMile;
                 double tolKm    = toleranceMiles * kmPerMile;
-                candidates.removeIf(
-                        c -> Math.abs(D.get(guessIdx, c) - targetKm) > tolKm
-                );
+                filter(guessIdx, targetKm - tolKm, targetKm + tolKm);
             } else {
                 // Not closer: exclude any country that would have produced a strictly smaller reading
                 double thresholdKm = (bestDistMiles - toleranceMiles) * kmPerMile;
-                candidates.removeIf(
-                        c -> D.get(guessIdx, c) < thresholdKm
-                );
+                filter(guessIdx, thresholdKm, Double.POSITIVE_INFINITY);
             }
         }
-        return !candidates.isEmpty();
+
+        if (recording && Metrics.enabled()) {
+            Metrics.CANDIDATES_BEFORE.record(before);
+            Metrics.CANDIDATES_AFTER.record(candidateCount);
+        }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.guess    = guessIdx;
+                event.adjacent = isAdjacent;
+                event.miles    = distMiles;
+                event.before   = before;
+                event.after    = candidateCount;
+                event.commit();
+            }
+        }
+        return candidateCount != 0;
+    }
+
+    /**
+     * Replaces the candidate set wholesale, e.g. with the support of a
+     * {@link Posterior}, which may grow as well as shrink.
+     *
+     * @param bits the new candidate bitset (64 indices per word)
+     */
+    void assignCandidates(long[] bits) {
+        int count = 0;
+        for (int w = 0; w < candidates.length; w++) {
+            // Toggling a key in and out of the hash are the same XOR
+            unhashCandidates(w, candidates[w] ^ bits[w]);
+            candidates[w] = bits[w];
+            count += Long.bitCount(bits[w]);
+        }
+        candidateCount = count;
+    }
+
+    /** Keeps only candidates c with loKm ≤ D(guessIdx, c) ≤ hiKm. */
+    private void filter(int guessIdx, double loKm, double hiKm) {
+        if (index != null) {
+            filterRange(guessIdx, loKm, hiKm);
+            return;
+        }
+        // No index: test every candidate, one word at a time
+        int count = 0;
+        for (int w = 0; w < candidates.length; w++) {
+            long word = candidates[w];
+            long keep = word;
+            while (word != 0) {
+                long bit = word & -word;
+                int c = (w << 6) + Long.numberOfTrailingZeros(word);
+                double d = D.get(guessIdx, c);
+                if (d < loKm || d > hiKm) keep &= ~bit;
+                word ^= bit;
+            }
+            unhashCandidates(w, candidates[w] & ~keep);
+            candidates[w] = keep;
+            count += Long.bitCount(keep);
+        }
+        candidateCount = count;
+    }
+
+    /**
+     * Index-backed filter: the survivors are exactly the ranks [from, to) of
+     * guessIdx's sorted row. Walks whichever side is shorter — the kept slice
+     * (building a mask to AND in) or the dropped prefix and suffix.
+     */
+    private void filterRange(int guessIdx, double loKm, double hiKm) {
+        int from = index.lowerBound(guessIdx, loKm);
+        int to   = Math.max(from, index.upperBound(guessIdx, hiKm));
+        if (to - from < n - (to - from)) {
+            Arrays.fill(mask, 0L);
+            for (int r = from; r < to; r++) {
+                int c = index.at(guessIdx, r);
+                mask[c >>> 6] |= 1L << c;
+            }
+            int count = 0;
+            for (int w = 0; w < candidates.length; w++) {
+                unhashCandidates(w, candidates[w] & ~mask[w]);
+                candidates[w] &= mask[w];
+                count += Long.bitCount(candidates[w]);
+            }
+            candidateCount = count;
+        } else {
+            for (int r = 0; r < from; r++) removeCandidate(index.at(guessIdx, r));
+            for (int r = to; r < n; r++) removeCandidate(index.at(guessIdx, r));
+        }
+    }
+
+    private void removeCandidate(int idx) {
+        long bit = 1L << idx;
+        if ((candidates[idx >>> 6] & bit) != 0) {
+            candidates[idx >>> 6] &= ~bit;
+            candidateCount--;
+            hash ^= candidateKey(idx);
+        }
+    }
+
+    private void markGuessed(int idx) {
+        long bit = 1L << idx;
+        if ((guessed[idx >>> 6] & bit) == 0) {
+            guessed[idx >>> 6] |= bit;
+            hash ^= guessedKey(idx);
+        }
+    }
+
+    /** Removes the keys of the candidates in bits (word w) from the hash. */
+    private void unhashCandidates(int w, long bits) {
+        while (bits != 0) {
+            hash ^= candidateKey((w << 6) + Long.numberOfTrailingZeros(bits));
+            bits &= bits - 1;
+        }
     }
 
     /** @return unmodifiable view of current candidates */
     public Set<Integer> getCandidates() {
-        return Collections.unmodifiableSet(candidates);
+        return new BitView(candidates, true);
     }
 
     /** @return unmodifiable view of all guessed indices */
     public Set<Integer> getGuessed() {
-        return Collections.unmodifiableSet(guessed);
+        return new BitView(guessed, false);
+    }
+
+    /** @return the number of remaining candidates */
+    public int candidateCount() {
+        return candidateCount;
+    }
+
+    /** @return the best (smallest) distance reading so far, or Double.MAX_VALUE before any */
+    public double bestDistanceMiles() {
+        return bestDistMiles;
+    }
+
+    /** @return true if idx is still a possible target */
+    public boolean isCandidate(int idx) {
+        return (candidates[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    /** @return true if idx has already been guessed */
+    public boolean isGuessed(int idx) {
+        return (guessed[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    /**
+     * Primitive iteration over candidates.
+     *
+     * @param from first index to consider
+     * @return the smallest candidate index ≥ from, or -1 if there is none
+     */
+    public int nextCandidate(int from) {
+        return nextSetBit(candidates, from);
+    }
+
+    /**
+     * Copies the candidate indices, ascending, into out.
+     *
+     * @param out destination with room for {@link #candidateCount()} entries
+     * @return the number of indices written
+     */
+    public int copyCandidates(int[] out) {
+        int k = 0;
+        for (int w = 0; w < candidates.length; w++) {
+            long word = candidates[w];
+            while (word != 0) {
+                out[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * 64-bit Zobrist hash of the candidate and guessed bitsets, e.g. for
+     * keying precomputed rankings by game state. Equal states always hash
+     * alike, whatever order they were reached in; the keys are fixed, so
+     * hashes are stable across runs. O(1).
+     */
+    public long stateHash() {
+        return hash;
+    }
+
+    /** Zobrist key for “idx is a candidate”. */
+    static long candidateKey(int idx) {
+        return mix(0x9E3779B97F4A7C15L * (2L * idx + 1));
+    }
+
+    /** Zobrist key for “idx has been guessed”. */
+    static long guessedKey(int idx) {
+        return mix(0x9E3779B97F4A7C15L * (2L * idx + 2));
+    }
+
+    private static long mix(long h) {
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 31;
+        h *= 0x94D049BB133111EBL;
+        return h ^ (h >>> 29);
+    }
+
+    /** @return the live candidate bitset (64 indices per word); callers must not modify it */
+    long[] candidateWords() {
+        return candidates;
+    }
+
+    /** @return the live guessed bitset (64 indices per word); callers must not modify it */
+    long[] guessedWords() {
+        return guessed;
     }
 
     /** @return true if exactly one candidate remains */
     public boolean isSolved() {
-        return candidates.size() == 1;
+        return candidateCount == 1;
     }
 
     /**
@@ -135,6 +436,63 @@ public class CandidateManager {
         if (!isSolved()) {
             throw new IllegalStateException("Not solved yet");
         }
-        return candidates.iterator().next();
+        return nextCandidate(0);
+    }
+
+    private static int nextSetBit(long[] words, int from) {
+        int w = from >>> 6;
+        if (w >= words.length) return -1;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length) return -1;
+            word = words[w];
+        }
+    }
+
+    /** Read-only Set view over one of the live bitsets. */
+    private class BitView extends AbstractSet<Integer> {
+        private final long[] words;
+        private final boolean isCandidates;
+
+        BitView(long[] words, boolean isCandidates) {
+            this.words        = words;
+            this.isCandidates = isCandidates;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Integer)) return false;
+            int i = (Integer) o;
+            return i >= 0 && i < n && (words[i >>> 6] & (1L << i)) != 0;
+        }
+
+        @Override
+        public int size() {
+            if (isCandidates) return candidateCount;
+            int c = 0;
+            for (long w : words) c += Long.bitCount(w);
+            return c;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int next = nextSetBit(words, 0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public Integer next() {
+                    if (next < 0) throw new NoSuchElementException();
+                    int cur = next;
+                    next = cur + 1 < n ? nextSetBit(words, cur + 1) : -1;
+                    return cur;
+                }
+            };
+        }
     }
 }
@@ -1,20 +1,34 @@
 // CountryLoader.java
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * Utility class for loading Country objects from a CSV file.
- * Expects the CSV to have at least three columns per row:
+ * Utility class for loading countries from a CSV file.
+ * Expects the CSV to have a header row and at least three columns per row:
  *   [0] = country name,
  *   [...],
- *   [p.length-2] = latitude,
- *   [p.length-1] = longitude.
+ *   [last-1] = latitude,
+ *   [last]   = longitude.
+ *
+ * Fields follow RFC 4180: a field may be wrapped in double quotes, in which
+ * case it may contain commas, line breaks and doubled quotes ("").
+ *
+ * The file is streamed through a FileChannel in fixed-size chunks and parsed
+ * byte by byte into columnar arrays ({@link Columns}); numbers are decoded in
+ * place and no per-row objects are created, so load time for large
+ * gazetteers is bounded by I/O rather than garbage collection.
  */
 public class CountryLoader {
+    private static final int CHUNK = 1 << 20;
 
     /**
      * Loads a list of Country instances from the given CSV file path.
@@ -24,24 +38,269 @@ public class CountryLoader {
      * @throws IOException if the file cannot be read
      */
     public static List<Country> load(String csvPath) throws IOException {
-        List<Country> countries = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(csvPath))) {
-            // Skip header
-            String line = br.readLine();
-            while ((line = br.readLine()) != null) {
-                String[] p = line.split(",");
-                if (p.length < 3) {
-                    // malformed row; skip
+        return loadColumns(Paths.get(csvPath)).toCountries();
+    }
+
+    /**
+     * Loads the CSV into columnar arrays without creating Country objects.
+     *
+     * @param csvPath path to the CSV file
+     * @return the parsed columns
+     * @throws IOException if the file cannot be read
+     * @throws NumberFormatException if a latitude or longitude is not a number
+     */
+    public static Columns loadColumns(Path csvPath) throws IOException {
+        Parser parser = new Parser();
+        try (FileChannel ch = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+            boolean eof = false;
+            while (!eof) {
+                eof = ch.read(buf) < 0;
+                // A record may straddle chunks: parse what is complete, carry the rest over
+                int used = parser.parse(buf.array(), buf.position(), eof);
+                if (used == 0 && !eof && !buf.hasRemaining()) {
+                    // One record longer than the buffer: grow it
+                    buf = ByteBuffer.allocate(buf.capacity() * 2).put(buf.flip());
                     continue;
                 }
-                String name = p[0].trim();
-                // latitude is second‐to‐last column
-                double lat  = Double.parseDouble(p[p.length - 2].trim());
-                // longitude is last column
-                double lon  = Double.parseDouble(p[p.length - 1].trim());
-                countries.add(new Country(name, lat, lon));
+                buf.flip().position(used);
+                buf.compact();
             }
         }
-        return countries;
+        return parser.columns();
     }
+
+    /**
+     * Columnar country data: coordinates in primitive arrays and every name
+     * packed into one UTF-8 byte array.
+     */
+    public static final class Columns {
+        private final int size;
+        private final double[] lat;
+        private final double[] lon;
+        private final byte[] names;
+        /** Name i is names[nameOffsets[i] .. nameOffsets[i + 1]). */
+        private final int[] nameOffsets;
+
+        Columns(int size, double[] lat, double[] lon, byte[] names, int[] nameOffsets) {
+            this.size        = size;
+            this.lat         = lat;
+            this.lon         = lon;
+            this.names       = names;
+            this.nameOffsets = nameOffsets;
+        }
+
+        /** @return the number of rows */
+        public int size() {
+            return size;
+        }
+
+        /** @return latitudes in degrees, one per row (the backing array; do not modify) */
+        public double[] latitudes() {
+            return lat;
+        }
+
+        /** @return longitudes in degrees, one per row (the backing array; do not modify) */
+        public double[] longitudes() {
+            return lon;
+        }
+
+        /** @return the name of row i, decoded on demand */
+        public String name(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+            return new String(names, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8);
+        }
+
+        /** @return one Country per row */
+        public List<Country> toCountries() {
+            List<Country> countries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) countries.add(new Country(name(i), lat[i], lon[i]));
+            return countries;
+        }
+    }
+
+    /** Incremental RFC 4180 record parser writing straight into growable columns. */
+    private static final class Parser {
+        private int size;
+        private double[] lat = new double[256];
+        private double[] lon = new double[256];
+        private byte[] names = new byte[4096];
+        private int[] nameOffsets = new int[257];
+        private int nameBytes;
+
+        /** Field boundaries of the record being parsed: [start, end) and whether it was quoted. */
+        private int[] fieldStart = new int[16], fieldEnd = new int[16];
+        private boolean[] fieldQuoted = new boolean[16];
+        private boolean headerSkipped;
+        private long line = 1;
+
+        /**
+         * Parses every complete record in a[0..limit).
+         *
+         * @return the number of bytes consumed; the rest start an incomplete record
+         */
+        int parse(byte[] a, int limit, boolean eof) {
+            int p = 0;
+            while (p < limit) {
+                int next = record(a, p, limit, eof);
+                if (next < 0) break;
+                p = next;
+            }
+            return p;
+        }
+
+        /** Parses one record starting at p; returns the position after it, or -1 if it is incomplete. */
+        private int record(byte[] a, int p, int limit, boolean eof) {
+            int fields = 0;
+            long lines = 0;
+            while (true) {
+                if (fields == fieldStart.length) growFields();
+                boolean quoted = p < limit && a[p] == '"';
+                int start, end;
+                if (quoted) {
+                    start = ++p;
+                    while (true) {
+                        if (p >= limit) {
+                            if (!eof) return -1;        // quote still open: wait for more input
+                            break;                      // unterminated at end of file: take the rest
+                        }
+                        byte b = a[p];
+                        if (b == '"') {
+                            if (p + 1 >= limit && !eof) return -1;
+                            if (p + 1 < limit && a[p + 1] == '"') { p += 2; continue; }
+                            break;
+                        }
+                        if (b == '\n') lines++;
+                        p++;
+                    }
+                    end = p;
+                    if (p < limit) p++;
+                    // Tolerate junk between the closing quote and the delimiter
+                    while (p < limit && a[p] != ',' && a[p] != '\n') p++;
+                } else {
+                    start = p;
+                    while (p < limit && a[p] != ',' && a[p] != '\n') p++;
+                    end = p;
+                }
+                fieldStart[fields]  = start;
+                fieldEnd[fields]    = end;
+                fieldQuoted[fields] = quoted;
+                fields++;
+
+                if (p >= limit) {
+                    if (!eof) return -1;
+                    break;
+                }
+                if (a[p++] == '\n') break;
+            }
+            finish(a, fields);
+            line += lines + 1;
+            return p;
+        }
+
+        private void finish(byte[] a, int fields) {
+            // A trailing \r belongs to the line ending, not the last field
+            int last = fields - 1;
+            if (fieldEnd[last] > fieldStart[last] && a[fieldEnd[last] - 1] == '\r') fieldEnd[last]--;
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            if (fields < 3) return; // malformed row; skip
+
+            if (size == lat.length) {
+                lat = Arrays.copyOf(lat, size * 2);
+                lon = Arrays.copyOf(lon, size * 2);
+                nameOffsets = Arrays.copyOf(nameOffsets, size * 2 + 1);
+            }
+            lat[size] = number(a, fields - 2);
+            lon[size] = number(a, fields - 1);
+            appendName(a);
+            size++;
+        }
+
+        /** Copies field 0, trimmed and with doubled quotes collapsed, into the name pool. */
+        private void appendName(byte[] a) {
+            int s = fieldStart[0], e = fieldEnd[0];
+            if (!fieldQuoted[0]) {
+                while (s < e && (a[s] & 0xFF) <= ' ') s++;
+                while (e > s && (a[e - 1] & 0xFF) <= ' ') e--;
+            }
+            if (nameBytes + (e - s) > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, nameBytes + (e - s)));
+            }
+            for (int i = s; i < e; i++) {
+                names[nameBytes++] = a[i];
+                if (fieldQuoted[0] && a[i] == '"') i++; // "" → "
+            }
+            nameOffsets[size + 1] = nameBytes;
+        }
+
+        /**
+         * Decodes a decimal field in place. Plain decimals with at most 15
+         * significant digits, which covers coordinates, are an exactly
+         * representable long divided by an exact power of ten and so come out
+         * correctly rounded; anything else is handed to Double.parseDouble.
+         */
+        private double number(byte[] a, int field) {
+            int s = fieldStart[field], e = fieldEnd[field];
+            while (s < e && (a[s] & 0xFF) <= ' ') s++;
+            while (e > s && (a[e - 1] & 0xFF) <= ' ') e--;
+
+            int p = s;
+            boolean negative = false;
+            if (p < e && (a[p] == '-' || a[p] == '+')) negative = a[p++] == '-';
+            long mantissa = 0;
+            int digits = 0, scale = 0;
+            boolean seenDigit = false, seenPoint = false, simple = true;
+            for (; p < e; p++) {
+                byte b = a[p];
+                if (b >= '0' && b <= '9') {
+                    seenDigit = true;
+                    if (mantissa == 0 && b == '0') {
+                        if (seenPoint) scale--;
+                        continue;
+                    }
+                    if (digits == 15) { simple = false; break; }
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (seenPoint) scale--;
+                } else if (b == '.' && !seenPoint) {
+                    seenPoint = true;
+                } else {
+                    simple = false; // exponent, NaN, Infinity, or garbage
+                    break;
+                }
+            }
+            if (simple && seenDigit && -scale < POW10.length) {
+                double v = scale == 0 ? mantissa : mantissa / POW10[-scale];
+                return negative ? -v : v;
+            }
+            String text = new String(a, s, e - s, StandardCharsets.US_ASCII);
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException ex) {
+                throw new NumberFormatException("Line " + line + ": not a number: \"" + text + "\"");
+            }
+        }
+
+        private void growFields() {
+            int len = fieldStart.length * 2;
+            fieldStart  = Arrays.copyOf(fieldStart, len);
+            fieldEnd    = Arrays.copyOf(fieldEnd, len);
+            fieldQuoted = Arrays.copyOf(fieldQuoted, len);
+        }
+
+        Columns columns() {
+            return new Columns(size,
+                    Arrays.copyOf(lat, size), Arrays.copyOf(lon, size),
+                    Arrays.copyOf(names, nameBytes), Arrays.copyOf(nameOffsets, size + 1));
+        }
+    }
+
+    /** Exact powers of ten representable as doubles. */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
 }
@@ -0,0 +1,101 @@
+// DistanceIndex.java
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * For every guess, the other countries sorted by distance from it.
+ *
+ * Range filters such as “within ±tolerance of X km” become a binary search
+ * plus a walk over the matching slice of the row, and nearest-by-error
+ * queries expand outwards from the reported distance.
+ *
+ * Rows are stored flat: entry r of row g is at g * n + r. Takes 8n² bytes,
+ * so engines build one only up to {@link #MAX_SIZE} countries and scan above.
+ */
+public class DistanceIndex {
+    /** Most countries an engine indexes: 8n² bytes is 128 MB here, and 2 GB at 16k. */
+    public static final int MAX_SIZE = 4_096;
+
+    private final int n;
+    /** order[g * n + r] = index of the r-th closest country to g (g itself first) */
+    private final int[] order;
+    /** dist[g * n + r] = D.get(g, order[g * n + r]), ascending within a row */
+    private final float[] dist;
+
+    private DistanceIndex(int n, int[] order, float[] dist) {
+        this.n     = n;
+        this.order = order;
+        this.dist  = dist;
+    }
+
+    /**
+     * @return true if D stores its distances and has at most {@link #MAX_SIZE}
+     *         countries; otherwise callers do without an index
+     */
+    public static boolean supports(DistanceMatrix D) {
+        return D.isStored() && D.size() <= MAX_SIZE;
+    }
+
+    /**
+     * Argsorts every row of the matrix, rows in parallel.
+     * Runs in O(n² log n) time.
+     */
+    public static DistanceIndex build(DistanceMatrix D) {
+        int n = D.size();
+        if ((long) n * n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many countries for a dense index: " + n);
+        }
+        int[] order  = new int[n * n];
+        float[] dist = new float[n * n];
+        IntStream.range(0, n).parallel().forEach(g -> {
+            // Non-negative floats order like their bit patterns, so pack (distance, index) and sort longs
+            long[] keys = new long[n];
+            for (int j = 0; j < n; j++) {
+                keys[j] = ((long) Float.floatToIntBits((float) D.get(g, j)) << 32) | j;
+            }
+            Arrays.sort(keys);
+            int row = g * n;
+            for (int r = 0; r < n; r++) {
+                order[row + r] = (int) keys[r];
+                dist[row + r]  = Float.intBitsToFloat((int) (keys[r] >>> 32));
+            }
+        });
+        return new DistanceIndex(n, order, dist);
+    }
+
+    /** @return the number of countries per row */
+    public int size() {
+        return n;
+    }
+
+    /** @return the country at rank r (0 = nearest, i.e. g itself) in g's row */
+    public int at(int g, int r) {
+        return order[g * n + r];
+    }
+
+    /** @return the distance (km) of the country at rank r in g's row */
+    public double distanceAt(int g, int r) {
+        return dist[g * n + r];
+    }
+
+    /** @return the first rank in g's row whose distance is ≥ km (n if none) */
+    public int lowerBound(int g, double km) {
+        int lo = 0, hi = n, row = g * n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dist[row + mid] < km) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** @return the first rank in g's row whose distance is &gt; km (n if none) */
+    public int upperBound(int g, double km) {
+        int lo = 0, hi = n, row = g * n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dist[row + mid] <= km) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
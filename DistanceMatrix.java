@@ -1,31 +1,60 @@
 // DistanceMatrix.java
 
+import java.nio.FloatBuffer;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Precomputes and stores the pairwise great-circle distances (in kilometers)
  * between a list of countries.
+ *
+ * Only the strict upper triangle is stored, as floats in row-major order, so
+ * the matrix takes n(n-1)/2 × 4 bytes. The backing buffer may be a heap
+ * array or a memory-mapped file (see {@link ModelCache}). Gazetteers too
+ * large for any n×n storage use {@link TiledDistanceMatrix} instead.
  */
 public class DistanceMatrix {
-    private final double[][] distKm;
+    private final int n;
+    private final FloatBuffer tri;
 
     /**
      * Constructs the distance matrix for the given list of countries.
-     * Runs in O(n²) time where n = countries.size().
+     * Runs in O(n²) time where n = countries.size(), spread across cores.
      *
      * @param countries list of Country objects
      */
     public DistanceMatrix(List<Country> countries) {
-        int n = countries.size();
-        distKm = new double[n][n];
-        for (int i = 0; i < n; i++) {
-            distKm[i][i] = 0.0;
-            for (int j = i + 1; j < n; j++) {
-                double d = haversine(countries.get(i), countries.get(j));
-                distKm[i][j] = d;
-                distKm[j][i] = d;
-            }
+        this(countries.size(), FloatBuffer.wrap(computeTriangle(latitudes(countries), longitudes(countries))));
+    }
+
+    /**
+     * Builds the matrix from columnar coordinates.
+     *
+     * @param latDeg latitudes in degrees
+     * @param lonDeg longitudes in degrees, same length as latDeg
+     */
+    public static DistanceMatrix fromCoordinates(double[] latDeg, double[] lonDeg) {
+        return new DistanceMatrix(latDeg.length, FloatBuffer.wrap(computeTriangle(latDeg, lonDeg)));
+    }
+
+    /**
+     * Wraps an existing upper triangle, e.g. one mapped from a cache file.
+     *
+     * @param n   number of countries
+     * @param tri n(n-1)/2 distances in row-major upper-triangular order
+     */
+    DistanceMatrix(int n, FloatBuffer tri) {
+        if (tri.remaining() != triangleSize(n)) {
+            throw new IllegalArgumentException("Expected " + triangleSize(n) + " distances, got " + tri.remaining());
         }
+        this.n   = n;
+        this.tri = tri.slice();
+    }
+
+    /** For subclasses that compute distances on demand instead of storing a triangle. */
+    protected DistanceMatrix(int n) {
+        this.n   = n;
+        this.tri = null;
     }
 
     /**
@@ -37,7 +66,32 @@ public class DistanceMatrix {
      * @throws IndexOutOfBoundsException if i or j is out of range
      */
     public double get(int i, int j) {
-        return distKm[i][j];
+        if (i == j) {
+            if (i < 0 || i >= n) throw new IndexOutOfBoundsException(i);
+            return 0.0;
+        }
+        if (i > j) { int t = i; i = j; j = t; }
+        if (j >= n) throw new IndexOutOfBoundsException(j);
+        return tri.get(rowStart(i, n) + (j - i - 1));
+    }
+
+    /**
+     * Copies row i (the distances in km from i to every country) into out.
+     * The part right of the diagonal is one contiguous bulk copy; the rest
+     * is gathered down column i.
+     *
+     * @param i   row index
+     * @param out destination of length at least n
+     */
+    public void row(int i, float[] out) {
+        if (i < 0 || i >= n) throw new IndexOutOfBoundsException(i);
+        if (tri == null) {
+            for (int j = 0; j < n; j++) out[j] = (float) get(i, j);
+            return;
+        }
+        for (int j = 0; j < i; j++) out[j] = tri.get(rowStart(j, n) + (i - j - 1));
+        out[i] = 0f;
+        tri.get(rowStart(i, n), out, i + 1, n - i - 1);
     }
 
     /**
@@ -46,24 +100,99 @@ public class DistanceMatrix {
      * @return the size n, where the matrix is n×n
      */
     public int size() {
-        return distKm.length;
+        return n;
+    }
+
+    /**
+     * @return true if every distance is held in memory (heap or mapped), so
+     *         n×n tables derived from it are affordable too; false for
+     *         subclasses that compute distances on demand
+     */
+    public boolean isStored() {
+        return tri != null;
+    }
+
+    /** @return a read-only view of the upper triangle, for serialization */
+    FloatBuffer triangle() {
+        if (tri == null) {
+            throw new UnsupportedOperationException("Distances are not stored as a triangle");
+        }
+        return tri.asReadOnlyBuffer();
+    }
+
+    /** @return the number of stored distances for an n×n matrix */
+    static int triangleSize(int n) {
+        long size = (long) n * (n - 1) / 2;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many countries for a dense matrix: " + n);
+        }
+        return (int) size;
+    }
+
+    /** Offset of (i, i+1) in the row-major upper triangle. */
+    private static int rowStart(int i, int n) {
+        return (int) ((long) i * (2L * n - i - 1) / 2);
+    }
+
+    static double[] latitudes(List<Country> countries) {
+        double[] lat = new double[countries.size()];
+        for (int i = 0; i < lat.length; i++) lat[i] = countries.get(i).getLatitude();
+        return lat;
+    }
+
+    static double[] longitudes(List<Country> countries) {
+        double[] lon = new double[countries.size()];
+        for (int i = 0; i < lon.length; i++) lon[i] = countries.get(i).getLongitude();
+        return lon;
+    }
+
+    /**
+     * Fills the upper triangle of great-circle distances.
+     *
+     * Each point is converted to a unit vector once, so the inner loop is
+     * trig-free apart from one asin: d = 2R·asin(|a - b| / 2). The
+     * coordinates live in flat arrays so C2 can vectorize the difference
+     * and norm arithmetic, and rows are filled in parallel since each row
+     * owns a disjoint slice of the triangle.
+     */
+    private static float[] computeTriangle(double[] latDeg, double[] lonDeg) {
+        int n = latDeg.length;
+        double[][] unit = unitVectors(latDeg, lonDeg);
+        double[] x = unit[0], y = unit[1], z = unit[2];
+
+        float[] upper = new float[triangleSize(n)];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            double xi = x[i], yi = y[i], zi = z[i];
+            int base = rowStart(i, n) - i - 1;
+            for (int j = i + 1; j < n; j++) {
+                upper[base + j] = chordToKm(x[j] - xi, y[j] - yi, z[j] - zi);
+            }
+        });
+        return upper;
+    }
+
+    /** @return {x[], y[], z[]}: the unit vector of every (lat, lon) pair, in degrees */
+    static double[][] unitVectors(double[] latDeg, double[] lonDeg) {
+        int n = latDeg.length;
+        if (lonDeg.length != n) {
+            throw new IllegalArgumentException("latitude/longitude length mismatch");
+        }
+        double[] x = new double[n], y = new double[n], z = new double[n];
+        for (int i = 0; i < n; i++) {
+            double lat = Math.toRadians(latDeg[i]);
+            double lon = Math.toRadians(lonDeg[i]);
+            double c = Math.cos(lat);
+            x[i] = c * Math.cos(lon);
+            y[i] = c * Math.sin(lon);
+            z[i] = Math.sin(lat);
+        }
+        return new double[][] { x, y, z };
     }
 
-    // Haversine formula to compute great-circle distance between two centroids.
-    private static double haversine(Country a, Country b) {
+    /** Great-circle distance (km) for the chord vector (dx, dy, dz) between two unit vectors. */
+    static float chordToKm(double dx, double dy, double dz) {
         final double R = 6371.0; // Earth radius in kilometers
-        double lat1 = Math.toRadians(a.getLatitude());
-        double lon1 = Math.toRadians(a.getLongitude());
-        double lat2 = Math.toRadians(b.getLatitude());
-        double lon2 = Math.toRadians(b.getLongitude());
-
-        double dLat = lat2 - lat1;
-        double dLon = lon2 - lon1;
-        double sinDLat = Math.sin(dLat / 2);
-        double sinDLon = Math.sin(dLon / 2);
-        double h = sinDLat * sinDLat
-                + Math.cos(lat1) * Math.cos(lat2)
-                * sinDLon * sinDLon;
-        return R * 2 * Math.atan2(Math.sqrt(h), Math.sqrt(1 - h));
+        double half = 0.5 * Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return (float) (2 * R * Math.asin(Math.min(1.0, half)));
     }
 }
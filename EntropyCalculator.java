@@ -1,6 +1,5 @@
 // EntropyService.java
 
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
@@ -18,15 +17,16 @@ public class EntropyCalculator {
      * @param guessIdx   index of the country being considered as the next guess
      * @param candidates set of indices still possible as the target
      * @param D          precomputed DistanceMatrix (km)
-     * @param adj        adjacency lists: adj.get(i) contains neighbors of country i
+     * @param adj        adjacency graph
      * @param lambdaKm   decay constant (in km) for the redness function
      * @return Shannon entropy (in bits) of the feedback distribution
      */
     public static double score(int guessIdx,
                                Set<Integer> candidates,
                                DistanceMatrix D,
-                               List<Set<Integer>> adj,
+                               AdjacencyGraph adj,
                                double lambdaKm) {
+        if (Metrics.enabled()) Metrics.SCORE_CALLS.increment();
         // Tally feedback frequencies
         Map<Integer, Integer> freq = new HashMap<>();
         for (int targetIdx : candidates) {
@@ -43,4 +43,62 @@ public class EntropyCalculator {
         }
         return H;
     }
+
+    /**
+     * Allocation-free variant of {@link #score} backed by a precomputed
+     * FeedbackTable: tallies codes into a reusable histogram and evaluates
+     * the entropy with table lookups only.
+     *
+     * @param guessIdx   index of the country being considered as the next guess
+     * @param candidates candidate indices; only the first count entries are read
+     * @param count      number of valid entries in candidates
+     * @param table      precomputed feedback codes
+     * @param hist       scratch histogram of length at least {@link FeedbackTable#CODE_COUNT}
+     * @return Shannon entropy (in bits) of the feedback distribution
+     */
+    public static double score(int guessIdx,
+                               int[] candidates,
+                               int count,
+                               FeedbackTable table,
+                               int[] hist) {
+        if (Metrics.enabled()) Metrics.SCORE_CALLS.increment();
+        table.histogram(guessIdx, candidates, count, hist);
+        return table.entropy(hist, count);
+    }
+
+    /**
+     * Entropy of the feedback distribution when the target is drawn from a
+     * weighted candidate set rather than a uniform one (see {@link Posterior}).
+     *
+     * @param guessIdx   index of the country being considered as the next guess
+     * @param candidates candidate indices; only the first count entries are read
+     * @param count      number of valid entries in candidates
+     * @param weights    unnormalized weight of each country, indexed by country
+     * @param table      precomputed feedback codes
+     * @param hist       scratch histogram of length at least {@link FeedbackTable#CODE_COUNT}
+     * @return Shannon entropy (in bits) of the feedback distribution
+     */
+    public static double score(int guessIdx,
+                               int[] candidates,
+                               int count,
+                               float[] weights,
+                               FeedbackTable table,
+                               double[] hist) {
+        if (Metrics.enabled()) Metrics.SCORE_CALLS.increment();
+        table.weightedHistogram(guessIdx, candidates, count, weights, hist);
+        // Hitting the target is an outcome of its own, not whatever code (g, g) has
+        double self = weights[guessIdx];
+        hist[table.code(guessIdx, guessIdx) + 1] -= self;
+        // H = log2(W) - Σ w·log2(w) / W over the outcome weights w, which sum to W
+        double total = self, sum = self > 0 ? self * Math.log(self) : 0.0;
+        for (int c = 0; c < FeedbackTable.CODE_COUNT; c++) {
+            double w = hist[c];
+            if (w > 0) {
+                total += w;
+                sum   += w * Math.log(w);
+            }
+        }
+        if (total == 0) return 0.0;
+        return (Math.log(total) - sum / total) / Math.log(2);
+    }
 }
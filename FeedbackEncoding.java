@@ -1,8 +1,5 @@
 // FeedbackService.java
 
-import java.util.List;
-import java.util.Set;
-
 /**
  * Encodes the feedback you would receive for guessing one country when the target is another.
  * Returns -1 to denote adjacency, or a 0–100 “redness” score otherwise.
@@ -15,23 +12,26 @@ public class FeedbackEncoding {
      * @param guessIdx   index of the guessed country
      * @param targetIdx  index of the actual target country
      * @param D          precomputed DistanceMatrix (km)
-     * @param adj        adjacency lists: adj.get(i) contains indices of i's neighbors
+     * @param adj        adjacency graph
      * @param lambdaKm   decay constant (in km) for the redness function
      * @return -1 if adjacent; otherwise a 0–100 integer redness
      */
     public static int encode(int guessIdx,
                              int targetIdx,
                              DistanceMatrix D,
-                             List<Set<Integer>> adj,
+                             AdjacencyGraph adj,
                              double lambdaKm) {
+        if (Metrics.enabled()) Metrics.ENCODE_CALLS.increment();
         // If target is in guess's adjacency set, return adjacency code
-        Set<Integer> neighbors = adj.get(guessIdx);
-        if (neighbors.contains(targetIdx)) {
+        if (adj.isAdjacent(guessIdx, targetIdx)) {
             return -1;
         }
-        // Otherwise compute redness = round(100 * exp(-distance/lambda))
-        double distanceKm = D.get(guessIdx, targetIdx);
-        double rawScore   = 100.0 * Math.exp(-distanceKm / lambdaKm);
+        return redness(D.get(guessIdx, targetIdx), lambdaKm);
+    }
+
+    /** @return the 0–100 redness round(100 · exp(-distance/lambda)) of a non-adjacent guess */
+    static int redness(double distanceKm, double lambdaKm) {
+        double rawScore = 100.0 * Math.exp(-distanceKm / lambdaKm);
         return (int) Math.round(rawScore);
     }
 }
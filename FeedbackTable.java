@@ -0,0 +1,201 @@
+// FeedbackTable.java
+
+import java.util.Arrays;
+
+/**
+ * Precomputes the feedback code for every (guess, target) pair so that scoring
+ * never has to touch the adjacency sets or call exp() at ranking time.
+ *
+ * Codes are stored row-major in an n×n byte matrix: -1 for adjacency,
+ * otherwise the 0–100 redness produced by {@link FeedbackEncoding#encode}.
+ * When the distances themselves are not stored (see {@link TiledDistanceMatrix})
+ * or n² bytes do not fit in an array, no matrix is kept and every lookup
+ * encodes its pair on demand; the results are the same. Histograms over many
+ * candidates and {@link #column} then fetch one distance row with
+ * {@link DistanceMatrix#row} rather than reading pairs across every tile.
+ */
+public class FeedbackTable {
+    /** Number of distinct codes (-1..100); histogram slot = code + 1. */
+    public static final int CODE_COUNT = 102;
+    /** On demand, histograms over at least n / ROW_FETCH_RATIO candidates read the guess's whole row. */
+    private static final int ROW_FETCH_RATIO = 8;
+
+    private final int n;
+    /** n×n codes, or null to encode on demand from D, adj and lambdaKm */
+    private final byte[] codes;
+    private final DistanceMatrix D;
+    private final AdjacencyGraph adj;
+    private final double lambdaKm;
+    /** Per-thread distance row for on-demand encoding; null when codes are precomputed */
+    private final ThreadLocal<float[]> rows;
+    /** plogp[c] = c · log2(c), for c in [0..n] */
+    private final double[] plogp;
+    /** log2[c] for c in [0..n]; log2[0] is unused */
+    private final double[] log2;
+
+    private FeedbackTable(int n, byte[] codes, DistanceMatrix D, AdjacencyGraph adj, double lambdaKm) {
+        this.n        = n;
+        this.codes    = codes;
+        this.D        = D;
+        this.adj      = adj;
+        this.lambdaKm = lambdaKm;
+        this.rows     = codes == null ? ThreadLocal.withInitial(() -> new float[n]) : null;
+        this.plogp    = new double[n + 1];
+        this.log2     = new double[n + 1];
+        for (int c = 1; c <= n; c++) {
+            log2[c]  = Math.log(c) / Math.log(2);
+            plogp[c] = c * log2[c];
+        }
+    }
+
+    /**
+     * Builds the table by encoding every ordered pair once.
+     * Runs in O(n²) time and uses n² bytes, unless D does not store its
+     * distances or n² exceeds an array, in which case nothing is precomputed.
+     *
+     * @param D        precomputed DistanceMatrix (km)
+     * @param adj      adjacency graph
+     * @param lambdaKm decay constant (in km) for the redness function
+     * @return the populated table
+     */
+    public static FeedbackTable build(DistanceMatrix D,
+                                      AdjacencyGraph adj,
+                                      double lambdaKm) {
+        int n = D.size();
+        if (!D.isStored() || (long) n * n > Integer.MAX_VALUE) {
+            return new FeedbackTable(n, null, D, adj, lambdaKm);
+        }
+        byte[] codes = new byte[n * n];
+        for (int g = 0; g < n; g++) {
+            int row = g * n;
+            for (int t = 0; t < n; t++) {
+                codes[row + t] = (byte) FeedbackEncoding.encode(g, t, D, adj, lambdaKm);
+            }
+        }
+        return new FeedbackTable(n, codes, null, null, 0);
+    }
+
+    /** @return the feedback code (-1..100) for guessing guessIdx when the target is targetIdx */
+    public int code(int guessIdx, int targetIdx) {
+        if (codes == null) return FeedbackEncoding.encode(guessIdx, targetIdx, D, adj, lambdaKm);
+        return codes[guessIdx * n + targetIdx];
+    }
+
+    /**
+     * Writes the code of every guess against one target: out[g] = code(g, targetIdx).
+     * On demand this reads the target's distance row, since distances are symmetric.
+     *
+     * @param out receives n codes
+     */
+    public void column(int targetIdx, byte[] out) {
+        if (codes != null) {
+            for (int g = 0, at = targetIdx; g < n; g++, at += n) out[g] = codes[at];
+            return;
+        }
+        float[] km = distancesFrom(targetIdx);
+        for (int g = 0; g < n; g++) out[g] = (byte) encode(g, targetIdx, km[g]);
+        if (Metrics.enabled()) Metrics.ENCODE_CALLS.add(n);
+    }
+
+    /** @return idx's distance row, in this thread's scratch buffer */
+    private float[] distancesFrom(int idx) {
+        float[] km = rows.get();
+        D.row(idx, km);
+        return km;
+    }
+
+    /** @return the code for a pair whose distance is already known, as {@link FeedbackEncoding#encode} */
+    private int encode(int guessIdx, int targetIdx, double km) {
+        return adj.isAdjacent(guessIdx, targetIdx) ? -1 : FeedbackEncoding.redness(km, lambdaKm);
+    }
+
+    /** @return true if the codes are precomputed rather than encoded on demand */
+    public boolean isPrecomputed() {
+        return codes != null;
+    }
+
+    /** @return the number of countries covered by this table */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Tallies the feedback codes a guess would produce over the given candidates.
+     * The histogram is cleared first; slot i counts code i - 1.
+     *
+     * @param guessIdx   index of the guess being scored
+     * @param candidates candidate indices; only the first count entries are read
+     * @param count      number of valid entries in candidates
+     * @param hist       scratch histogram of length at least {@link #CODE_COUNT}
+     */
+    public void histogram(int guessIdx, int[] candidates, int count, int[] hist) {
+        Arrays.fill(hist, 0, CODE_COUNT, 0);
+        if (codes == null) {
+            if (count < n / ROW_FETCH_RATIO) {
+                for (int i = 0; i < count; i++) hist[code(guessIdx, candidates[i]) + 1]++;
+                return;
+            }
+            float[] km = distancesFrom(guessIdx);
+            for (int i = 0; i < count; i++) {
+                int c = candidates[i];
+                hist[encode(guessIdx, c, km[c]) + 1]++;
+            }
+            if (Metrics.enabled()) Metrics.ENCODE_CALLS.add(count);
+            return;
+        }
+        int row = guessIdx * n;
+        for (int i = 0; i < count; i++) {
+            hist[codes[row + candidates[i]] + 1]++;
+        }
+    }
+
+    /**
+     * As {@link #histogram}, but each candidate adds its weight rather than 1,
+     * e.g. its {@link Posterior} weight.
+     *
+     * @param weights    weight of each country, indexed by country
+     * @param hist       scratch histogram of length at least {@link #CODE_COUNT}
+     */
+    public void weightedHistogram(int guessIdx, int[] candidates, int count, float[] weights, double[] hist) {
+        Arrays.fill(hist, 0, CODE_COUNT, 0.0);
+        if (codes == null) {
+            if (count < n / ROW_FETCH_RATIO) {
+                for (int i = 0; i < count; i++) {
+                    int c = candidates[i];
+                    hist[code(guessIdx, c) + 1] += weights[c];
+                }
+                return;
+            }
+            float[] km = distancesFrom(guessIdx);
+            for (int i = 0; i < count; i++) {
+                int c = candidates[i];
+                hist[encode(guessIdx, c, km[c]) + 1] += weights[c];
+            }
+            if (Metrics.enabled()) Metrics.ENCODE_CALLS.add(count);
+            return;
+        }
+        int row = guessIdx * n;
+        for (int i = 0; i < count; i++) {
+            int c = candidates[i];
+            hist[codes[row + c] + 1] += weights[c];
+        }
+    }
+
+    /**
+     * Shannon entropy (bits) of a histogram whose counts sum to total,
+     * using H = log2(N) - Σ c·log2(c) / N with table lookups only.
+     */
+    public double entropy(int[] hist, int total) {
+        return entropy(hist, 0, total);
+    }
+
+    /** As {@link #entropy(int[], int)} for the CODE_COUNT slots starting at offset. */
+    public double entropy(int[] hist, int offset, int total) {
+        if (total <= 1) return 0.0;
+        double sum = 0.0;
+        for (int i = 0; i < CODE_COUNT; i++) {
+            sum += plogp[hist[offset + i]];
+        }
+        return log2[total] - sum / total;
+    }
+}
@@ -0,0 +1,278 @@
+// GameServer.java
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Localhost HTTP server hosting many concurrent games on one shared
+ * SolverEngine. Each request runs on its own virtual thread; each game has
+ * its own Session.
+ *
+ * <pre>
+ *   POST   /games                                   → {"id": ...}
+ *   GET    /games/{id}/suggest?k=5                  → ranked suggestions
+ *   POST   /games/{id}/guess?country=..&amp;adjacent=y|n&amp;miles=..
+ *   POST   /games/{id}/undo
+ *   DELETE /games/{id}
+ * </pre>
+ * Any other method on these paths gets 405 Method Not Allowed.
+ * Ranking is CPU-bound, so at most maxRankings suggest calls run at once;
+ * games idle for longer than idleMillis are evicted.
+ */
+public class GameServer {
+    private final SolverEngine engine;
+    private final HttpServer http;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService reaper;
+    private final Semaphore rankings;
+    private final long idleMillis;
+
+    /** The one HTTP method each per-game action accepts; anything else gets a 405. */
+    private static final Map<String, String> ACTION_METHODS = Map.of(
+            "suggest", "GET",
+            "guess",   "POST",
+            "undo",    "POST");
+
+    private final Map<String, Game> games = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    /** One hosted game. The lock (not synchronized) keeps virtual threads unpinned while ranking. */
+    private static final class Game {
+        final SolverEngine.Session session;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile long lastAccess = System.currentTimeMillis();
+
+        Game(SolverEngine.Session session) {
+            this.session = session;
+        }
+    }
+
+    /**
+     * @param engine      shared model; sessions rank serially on the request thread
+     * @param port        port to bind on the loopback interface (0 for any free port)
+     * @param maxRankings maximum concurrent suggest computations
+     * @param idleMillis  evict games not touched for this long
+     */
+    public GameServer(SolverEngine engine, int port, int maxRankings, long idleMillis) throws IOException {
+        this.engine     = engine.withParallelRanking(false);
+        this.rankings   = new Semaphore(maxRankings);
+        this.idleMillis = idleMillis;
+        this.workers    = Executors.newVirtualThreadPerTaskExecutor();
+        this.reaper     = Executors.newSingleThreadScheduledExecutor();
+        this.http       = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.setExecutor(workers);
+        http.createContext("/games", this::handle);
+    }
+
+    public void start() {
+        http.start();
+        long period = Math.max(1000, idleMillis / 4);
+        reaper.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        http.stop(0);
+        reaper.shutdownNow();
+        workers.shutdown();
+    }
+
+    /** @return the bound port */
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    /** @return the number of games currently hosted */
+    public int gameCount() {
+        return games.size();
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        for (Iterator<Game> it = games.values().iterator(); it.hasNext(); ) {
+            if (it.next().lastAccess < cutoff) it.remove();
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            // parts: ["", "games"] or ["", "games", id] or ["", "games", id, action]
+            if (parts.length == 2) {
+                if (!allow(ex, "POST")) return;
+                String id = Long.toHexString(nextId.incrementAndGet());
+                games.put(id, new Game(engine.newSession()));
+                send(ex, 201, "{\"id\":\"" + id + "\"}");
+                return;
+            }
+            if (parts.length < 3) {
+                send(ex, 404, "{\"error\":\"not found\"}");
+                return;
+            }
+            Game game = games.get(parts[2]);
+            if (game == null) {
+                send(ex, 404, "{\"error\":\"no such game\"}");
+                return;
+            }
+            if (parts.length == 3) {
+                if (!allow(ex, "DELETE")) return;
+                games.remove(parts[2]);
+                send(ex, 204, null);
+                return;
+            }
+            String action = parts.length == 4 ? parts[3] : "";
+            String method = ACTION_METHODS.get(action);
+            if (method == null) {
+                send(ex, 404, "{\"error\":\"unknown action\"}");
+                return;
+            }
+            if (!allow(ex, method)) return;
+            Map<String, String> q = query(ex.getRequestURI().getRawQuery());
+            game.lastAccess = System.currentTimeMillis();
+            game.lock.lock();
+            try {
+                switch (action) {
+                    case "suggest":
+                        suggest(ex, game.session, q);
+                        break;
+                    case "guess":
+                        guess(ex, game.session, q);
+                        break;
+                    case "undo":
+                        boolean undone = game.session.undo();
+                        send(ex, 200, "{\"undone\":" + undone
+                                + ",\"candidates\":" + game.session.candidateCount() + "}");
+                        break;
+                    default:
+                        throw new IllegalStateException("unrouted action " + action);
+                }
+            } finally {
+                game.lock.unlock();
+            }
+        } catch (NumberFormatException e) {
+            send(ex, 400, "{\"error\":\"bad number\"}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(ex, 503, "{\"error\":\"interrupted\"}");
+        } catch (RuntimeException e) {
+            // A bug, not a bad request: log it, and answer unless a response is already under way
+            System.err.println("GameServer: " + ex.getRequestMethod() + " " + ex.getRequestURI() + " failed");
+            e.printStackTrace();
+            if (ex.getResponseCode() == -1) send(ex, 500, "{\"error\":\"internal error\"}");
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void suggest(HttpExchange ex, SolverEngine.Session s, Map<String, String> q)
+            throws IOException, InterruptedException {
+        int k = Math.max(1, Math.min(50, Integer.parseInt(q.getOrDefault("k", "5"))));
+        int count;
+        rankings.acquire();
+        try {
+            count = s.suggest(k);
+        } finally {
+            rankings.release();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"candidates\":").append(s.candidateCount()).append(",\"suggestions\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"country\":").append(json(engine.name(s.suggestion(i))))
+              .append(",\"bits\":").append(String.format("%.4f", s.suggestionScore(i))).append('}');
+        }
+        sb.append("]}");
+        send(ex, 200, sb.toString());
+    }
+
+    private void guess(HttpExchange ex, SolverEngine.Session s, Map<String, String> q) throws IOException {
+        int idx = engine.indexOf(q.getOrDefault("country", ""));
+        String adj = q.getOrDefault("adjacent", "n");
+        boolean adjacent = adj.equalsIgnoreCase("y") || adj.equalsIgnoreCase("yes") || adj.equalsIgnoreCase("true");
+        double miles = adjacent ? 0 : Double.parseDouble(q.getOrDefault("miles", "NaN"));
+
+        int result;
+        try {
+            result = s.submit(idx, adjacent, miles);
+        } catch (IllegalArgumentException e) {
+            // Missing, NaN, infinite or negative miles: the same answer as an unparsable number
+            send(ex, 400, "{\"error\":\"bad number\"}");
+            return;
+        }
+        String name;
+        switch (result) {
+            case SolverEngine.SUBMIT_OK:       name = "ok"; break;
+            case SolverEngine.SUBMIT_SOLVED:   name = "solved"; break;
+            case SolverEngine.SUBMIT_NO_MATCH: name = "no_match"; break;
+            default:                           name = "invalid";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"result\":\"").append(name).append("\",\"candidates\":").append(s.candidateCount());
+        if (result == SolverEngine.SUBMIT_SOLVED) {
+            sb.append(",\"solution\":").append(json(engine.name(s.solution())));
+        }
+        sb.append('}');
+        send(ex, result == SolverEngine.SUBMIT_INVALID ? 400 : 200, sb.toString());
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> q = new HashMap<>();
+        if (raw == null) return q;
+        for (String kv : raw.split("&")) {
+            int eq = kv.indexOf('=');
+            String k = eq < 0 ? kv : kv.substring(0, eq);
+            String v = eq < 0 ? "" : kv.substring(eq + 1);
+            q.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return q;
+    }
+
+    private static String json(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\');
+            if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /** @return true if the request uses method; otherwise answers 405 with an Allow header */
+    private static boolean allow(HttpExchange ex, String method) throws IOException {
+        if (ex.getRequestMethod().equals(method)) return true;
+        ex.getResponseHeaders().set("Allow", method);
+        send(ex, 405, "{\"error\":\"method not allowed\"}");
+        return false;
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        if (body == null) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
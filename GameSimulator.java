@@ -0,0 +1,120 @@
+// GameSimulator.java
+
+import java.util.stream.IntStream;
+
+/**
+ * Plays a full game against every country as the secret target, answering
+ * each guess with the feedback the DistanceMatrix and adjacency lists imply,
+ * and reports how the entropy policy performed.
+ *
+ * Games run in parallel; every worker thread reuses one Session.
+ */
+public class GameSimulator {
+    /** A game not solved within this many guesses counts as a failure. */
+    public static final int MAX_GUESSES = 30;
+
+    private static final double KM_PER_MILE = 1.60934;
+
+    /** Aggregate outcome of a simulation run. */
+    public static final class Report {
+        public final int games;
+        public final int solved;
+        public final int failures;
+        public final double averageGuesses;
+        public final int maxGuesses;
+        public final double seconds;
+        /** guesses[t] = guesses needed for target t, or -1 if it failed */
+        private final int[] guesses;
+
+        Report(int[] guesses, double seconds) {
+            int solved = 0, max = 0;
+            long total = 0;
+            for (int g : guesses) {
+                if (g < 0) continue;
+                solved++;
+                total += g;
+                max = Math.max(max, g);
+            }
+            this.games          = guesses.length;
+            this.solved         = solved;
+            this.failures       = guesses.length - solved;
+            this.averageGuesses = solved == 0 ? 0.0 : (double) total / solved;
+            this.maxGuesses     = max;
+            this.seconds        = seconds;
+            this.guesses        = guesses;
+        }
+
+        /** @return guesses needed when target was the secret, or -1 if that game failed */
+        public int guessesFor(int target) {
+            return guesses[target];
+        }
+
+        public double gamesPerSecond() {
+            return seconds == 0 ? 0.0 : games / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "games=%d avg=%.3f max=%d failures=%d time=%.3fs (%.1f games/s)",
+                    games, averageGuesses, maxGuesses, failures, seconds, gamesPerSecond());
+        }
+    }
+
+    /**
+     * Plays every target once, in parallel across the common ForkJoinPool.
+     *
+     * @param engine the solver model and policy to evaluate
+     * @return the aggregated report
+     */
+    public static Report run(SolverEngine engine) {
+        // Parallelism comes from running games concurrently, so each game ranks serially
+        SolverEngine serial = engine.withParallelRanking(false);
+        ThreadLocal<SolverEngine.Session> sessions = ThreadLocal.withInitial(serial::newSession);
+        int n = engine.size();
+        int[] guesses = new int[n];
+
+        long start = System.nanoTime();
+        IntStream.range(0, n).parallel().forEach(t -> {
+            SolverEngine.Session game = sessions.get();
+            game.reset();
+            guesses[t] = play(serial, game, t);
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Report(guesses, seconds);
+    }
+
+    /**
+     * Plays one game against a known target, always taking the top suggestion.
+     *
+     * @return the number of guesses used, or -1 if the game was not solved
+     */
+    static int play(SolverEngine engine, SolverEngine.Session game, int target) {
+        for (int turn = 1; turn <= MAX_GUESSES; turn++) {
+            int guess;
+            if (game.isSolved()) {
+                guess = game.solution();
+            } else if (game.suggest(1) > 0) {
+                guess = game.suggestion(0);
+            } else {
+                return -1;
+            }
+            if (guess == target) return turn;
+
+            boolean adjacent = isAdjacent(engine, guess, target);
+            double miles = adjacent ? 0 : trueMiles(engine, guess, target);
+            if (game.submit(guess, adjacent, miles) == SolverEngine.SUBMIT_INVALID) return -1;
+        }
+        return -1;
+    }
+
+    /** @return the adjacency answer a truthful player gives for guess when target is the secret */
+    static boolean isAdjacent(SolverEngine engine, int guess, int target) {
+        return engine.getAdjacency().isAdjacent(guess, target);
+    }
+
+    /** @return the distance reading (miles) a truthful player gives for guess when target is the secret */
+    static double trueMiles(SolverEngine engine, int guess, int target) {
+        return engine.getDistanceMatrix().get(guess, target) / KM_PER_MILE;
+    }
+}
@@ -1,116 +1,232 @@
 // GlobleSolver.java
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class GlobleSolver {
     private static final String  DATA_PATH        = "data/country-coord.csv";
+    private static final String  BOOK_PATH        = "data/opening-book.bin";
+    private static final String  CACHE_PATH       = "data/model-cache.bin";
     private static final int     ADJ_NEIGHBOR_K    = 6;      // “adjacent” = top‐6 nearest
     private static final double  TOLERANCE_MILES   = 400.0;  // ±200 mi tolerance
     private static final double  LAMBDA_KM         = 5000.0; // decay for redness
+    private static final int     SERVER_PORT       = 8080;
+    private static final int     SPECULATE_GUESSES = 3;      // branch on the top-3 suggestions
+    private static final int     SPECULATE_POSITIONS = 256;  // positions ranked ahead per turn
+    private static final int     CACHED_POSITIONS  = 1 << 14; // transposition cache size
+    private static final int     LOOKAHEAD_WIDTH   = 5;      // re-order the top-5 suggestions
+    private static final int     LOOKAHEAD_DEPTH   = 3;      // plies searched at most
+    private static final long    LOOKAHEAD_MILLIS  = 50;     // default search budget per turn
+    private static final double  POSTERIOR_SIGMA_MILES = 100.0; // default reading error (1σ)
+    private static final long    SERVER_IDLE_MILLIS = 30 * 60 * 1000L; // evict games idle 30 min
+    private static final int     DENSE_LIMIT       = 16_000; // larger gazetteers get tiled distances
+    private static final int     TILE_ROWS         = 64;     // rows per distance tile
+    private static final long    TILE_CACHE_BYTES  = 256L << 20; // off-heap budget for tiles
 
     public static void main(String[] args) throws IOException {
-        // 1) load country list
-        List<Country> countries = CountryLoader.load(DATA_PATH);
-        int n = countries.size();
-
-        // 2) build a name→index map
-        Map<String,Integer> idxMap = new HashMap<>();
-        for (int i = 0; i < n; i++) {
-            idxMap.put(countries.get(i).getName().toLowerCase(), i);
+        List<String> argList = Arrays.asList(args);
+
+        // --all: also consider non-candidate countries as guesses
+        boolean rankAll = argList.contains("--all");
+
+        // --borders <csv>: “adjacent” means a true land border from this file, not a top-k centroid
+        int bordersArg = argList.indexOf("--borders");
+        Path borders = bordersArg >= 0 && bordersArg + 1 < args.length ? Paths.get(args[bordersArg + 1]) : null;
+
+        // --data <csv>: solve over another gazetteer (e.g. city-level) in the country CSV format
+        int dataArg = argList.indexOf("--data");
+        String dataPath = dataArg >= 0 && dataArg + 1 < args.length ? args[dataArg + 1] : DATA_PATH;
+
+        // rankings of positions already seen this run, shared by every game (see --serve, --simulate);
+        //    rankings re-ordered by --lookahead depend on its budget, so they get a cache of their own
+        TranspositionCache positions = new TranspositionCache(CACHED_POSITIONS);
+        TranspositionCache lookaheadPositions = new TranspositionCache(CACHED_POSITIONS);
+
+        // --metrics: record hot-path counters and latencies, dumped to stderr on exit
+        //    (the dump is hooked up once the model exists; see below)
+        boolean metrics = argList.contains("--metrics");
+        if (metrics) Metrics.enable();
+
+        // 1) load countries and build the shared model (distances, adjacency, feedback codes),
+        //    reusing the binary model cache when it matches this CSV and adjacency source; above
+        //    DENSE_LIMIT places distances are tiled on demand and neither cached nor stored
+        List<Country> countries = CountryLoader.load(dataPath);
+        boolean tiled = countries.size() > DENSE_LIMIT;
+        if (rankAll && countries.size() > DistanceIndex.MAX_SIZE) {
+            System.err.println("--all needs sorted distance rows, which are only built up to "
+                    + DistanceIndex.MAX_SIZE + " places; ranking candidates only");
+            rankAll = false;
+        }
+        long adjacencyKey = borders == null ? ADJ_NEIGHBOR_K : ModelCache.checksum(borders);
+        Path cachePath = Paths.get(CACHE_PATH);
+        long cacheKey = ModelCache.key(Paths.get(dataPath), adjacencyKey);
+        ModelCache cache = tiled ? null : ModelCache.load(cachePath, cacheKey);
+        SolverEngine engine;
+        if (tiled) {
+            AdjacencyGraph adjacency = borders == null
+                    ? AdjacencyGraph.build(countries, ADJ_NEIGHBOR_K)
+                    : AdjacencyGraph.fromBorders(borders, countries.size(), SolverEngine.nameResolver(countries));
+            engine = new SolverEngine(countries, new TiledDistanceMatrix(countries, TILE_ROWS, TILE_CACHE_BYTES),
+                    adjacency, TOLERANCE_MILES, LAMBDA_KM);
+        } else if (cache != null) {
+            engine = new SolverEngine(countries, cache.getDistanceMatrix(), cache.getAdjacency(),
+                    TOLERANCE_MILES, LAMBDA_KM);
+        } else {
+            AdjacencyGraph adjacency = borders == null
+                    ? AdjacencyGraph.build(countries, ADJ_NEIGHBOR_K)
+                    : AdjacencyGraph.fromBorders(borders, countries.size(), SolverEngine.nameResolver(countries));
+            engine = new SolverEngine(countries, new DistanceMatrix(countries), adjacency,
+                    TOLERANCE_MILES, LAMBDA_KM);
+            try {
+                ModelCache.save(cachePath, cacheKey, engine.getDistanceMatrix(), engine.getAdjacency());
+            } catch (IOException e) {
+                // The cache only saves startup time; solve without it
+                System.err.println("Could not write model cache " + cachePath + ": " + e.getMessage());
+            }
+        }
+        // --incremental: keep per-guess feedback histograms up to date across turns
+        //    (IncrementalScorer) instead of ranking every candidate from scratch each turn
+        //    (GuessRanker: fork/join in an interactive game, serial per game under --simulate).
+        //    Off by default: rescoring was faster at every size measured (2x on the bundled
+        //    data, 7x on 4000 places), and each game would carry its own n × 102 ints
+        boolean incremental = argList.contains("--incremental");
+        engine = engine.withRankAll(rankAll).withIncrementalScoring(incremental).withTranspositionCache(positions);
+
+        // (--metrics also reports the cache in use and, for a tiled model, its tile cache)
+        if (metrics) {
+            DistanceMatrix distances = engine.getDistanceMatrix();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                String report = Metrics.report() + System.lineSeparator()
+                        + (argList.contains("--lookahead") ? lookaheadPositions : positions);
+                if (distances instanceof TiledDistanceMatrix) report += System.lineSeparator() + distances;
+                System.err.println(report);
+            }));
         }
 
-        // 3) precompute distances and adjacency
-        DistanceMatrix D = new DistanceMatrix(countries);
-        List<Set<Integer>> adj = AdjacencyGraph.build(countries, D, ADJ_NEIGHBOR_K);
+        // --build-book: precompute the first two turns offline; otherwise use the book if it is current
+        Path bookPath = Paths.get(BOOK_PATH);
+        long bookKey = OpeningBook.datasetKey(Paths.get(dataPath),
+                adjacencyKey, TOLERANCE_MILES, LAMBDA_KM, rankAll);
+        if (argList.contains("--build-book")) {
+            int entries = OpeningBook.build(engine, bookKey, bookPath);
+            System.out.println("Wrote " + entries + " positions to " + bookPath);
+            return;
+        }
 
-        // 4) init candidate manager
-        CandidateManager mgr = new CandidateManager(n, D, adj, TOLERANCE_MILES);
+        // --lookahead [ms]: order suggestions by expected guesses left, searched within ms per turn;
+        //    --simulate searches to LOOKAHEAD_DEPTH without a clock, so its results are reproducible
+        int lookaheadArg = argList.indexOf("--lookahead");
+        if (lookaheadArg >= 0) {
+            long millis = lookaheadArg + 1 < args.length && args[lookaheadArg + 1].matches("\\d+")
+                    ? Long.parseLong(args[lookaheadArg + 1]) : LOOKAHEAD_MILLIS;
+            if (argList.contains("--simulate")) millis = 0;
+            engine = engine.withLookahead(new Lookahead(engine.getFeedbackTable(),
+                    LOOKAHEAD_WIDTH, LOOKAHEAD_DEPTH, millis, ForkJoinPool.commonPool()))
+                    .withTranspositionCache(lookaheadPositions);
+        }
 
-        Scanner in = new Scanner(System.in);
-        while (!mgr.isSolved()) {
-            // 5a) rank unguessed countries by expected info gain (entropy)
-            Set<Integer> cands  = mgr.getCandidates();
-            Set<Integer> guessed = mgr.getGuessed();
-            List<Map.Entry<Integer,Double>> scores = new ArrayList<>();
-            for (int g : cands) {
-                if (guessed.contains(g)) continue;
-                double H = EntropyCalculator.score(g, cands, D, adj, LAMBDA_KM);
-                scores.add(Map.entry(g, H));
-            }
-            scores.sort((a,b) -> Double.compare(b.getValue(), a.getValue()));
+        // --posterior [miles]: weigh readings as Gaussian evidence instead of filtering, so a
+        //    misread distance costs guesses rather than emptying the candidate set
+        int posteriorArg = argList.indexOf("--posterior");
+        if (posteriorArg >= 0) {
+            double sigma = posteriorArg + 1 < args.length && args[posteriorArg + 1].matches("\\d+(\\.\\d+)?")
+                    ? Double.parseDouble(args[posteriorArg + 1]) : POSTERIOR_SIGMA_MILES;
+            engine = engine.withPosterior(sigma);
+        }
+
+        // (the book holds entropy rankings, so it is bypassed when lookahead re-orders them)
+        OpeningBook book = lookaheadArg < 0 ? OpeningBook.open(bookPath, bookKey, engine.size()) : null;
+        if (book != null) engine = engine.withOpeningBook(book);
+
+        // --simulate: play every country as the target and report, instead of an interactive game
+        if (argList.contains("--simulate")) {
+            System.out.println(GameSimulator.run(engine));
+            return;
+        }
+
+        // --serve [port]: host many games over HTTP on localhost instead of one interactive game
+        int serve = argList.indexOf("--serve");
+        if (serve >= 0) {
+            int port = serve + 1 < args.length && args[serve + 1].matches("\\d+")
+                    ? Integer.parseInt(args[serve + 1]) : SERVER_PORT;
+            GameServer server = new GameServer(engine.withIncrementalScoring(false), port,
+                    Runtime.getRuntime().availableProcessors(), SERVER_IDLE_MILLIS);
+            server.start();
+            System.out.println("Serving on http://127.0.0.1:" + server.port() + "/games");
+            return;
+        }
+
+        // 2) start a game
+        SolverEngine.Session game = engine.newSession();
+        int[] closest = new int[10];
+
+        // --speculate: rank the likely next positions in the background while the player types
+        Speculator speculator = null;
+        if (argList.contains("--speculate") && posteriorArg < 0) {
+            speculator = new Speculator(engine, SPECULATE_GUESSES, 5, SPECULATE_POSITIONS);
+            game.setSpeculator(speculator);
+        }
 
-            // 5b) show top 5
+        Scanner in = new Scanner(System.in);
+        while (!game.isSolved()) {
+            // 3) rank unguessed countries by expected info gain (entropy) and show top 5
+            int shown = game.suggest(5);
             System.out.println("\nTop 5 suggestions:");
-            for (int i = 0; i < Math.min(5, scores.size()); i++) {
-                int idx = scores.get(i).getKey();
+            for (int i = 0; i < shown; i++) {
                 System.out.printf(
                         "%d. %s (%.4f bits)%n",
                         i+1,
-                        countries.get(idx).getName(),
-                        scores.get(i).getValue()
+                        engine.name(game.suggestion(i)),
+                        game.suggestionScore(i)
                 );
             }
+            if (speculator != null) speculator.speculate(game, shown);
 
-            // 6) read the user's guess
+            // 4) read the user's guess
             System.out.print("\nEnter your guess: ");
-            String name = in.nextLine().trim().toLowerCase();
-            Integer guessIdx = idxMap.get(name);
-            if (guessIdx == null || guessed.contains(guessIdx)) {
+            int guessIdx = engine.indexOf(in.nextLine());
+            if (guessIdx < 0 || game.isGuessed(guessIdx)) {
                 System.out.println("Invalid or already guessed; try again.");
                 continue;
             }
 
-            // 7) snapshot state for backtracking
-            mgr.snapshot();
-
-            // 8) ask adjacency
+            // 5) ask adjacency
             System.out.print("Is it adjacent? (y/n): ");
             boolean isAdj = in.nextLine().trim().equalsIgnoreCase("y");
 
-            // 9) ask distance if not adjacent
+            // 6) ask distance if not adjacent
             double miles = 0;
-            if (!isAdj) {
-                System.out.print("Enter approximate distance (miles): ");
-                try {
+            int result;
+            try {
+                if (!isAdj) {
+                    System.out.print("Enter approximate distance (miles): ");
                     miles = Double.parseDouble(in.nextLine().trim());
-                } catch (NumberFormatException e) {
-                    System.out.println("Bad number; reverting guess.");
-                    mgr.restore();
-                    mgr.markImpossible(guessIdx);
-                    continue;
                 }
+                // 7) apply feedback; the session rolls back on its own if nothing matches,
+                //    and refuses a distance it cannot use (NaN, infinite, negative)
+                result = game.submit(guessIdx, isAdj, miles);
+            } catch (IllegalArgumentException e) { // NumberFormatException included
+                System.out.println("Bad number; reverting guess.");
+                game.reject(guessIdx);
+                continue;
             }
-
-            // Save the current candidates before applying feedback
-            Set<Integer> prevCands = new HashSet<>(mgr.getCandidates());
-
-            boolean ok = mgr.applyFeedback(guessIdx, isAdj, miles);
-            if (!ok) {
+            if (result == SolverEngine.SUBMIT_NO_MATCH) {
                 System.out.println("No exact matches—showing the 10 closest by error:");
-                PriorityQueue<Map.Entry<Integer,Double>> pq =
-                        new PriorityQueue<>(Comparator.comparingDouble(Map.Entry::getValue));
-                for (int c : prevCands) {
-                    double actualMi = D.get(guessIdx, c) / 1.60934;
-                    double error    = Math.abs(actualMi - miles);
-                    pq.add(Map.entry(c, error));
+                int found = game.closestByError(guessIdx, miles, closest);
+                for (int i = 0; i < found; i++) {
+                    System.out.println(" • " + engine.name(closest[i]));
                 }
-                for (int i = 0; i < 10 && !pq.isEmpty(); i++) {
-                    int idx = pq.poll().getKey();
-                    System.out.println(" • " + countries.get(idx).getName());
-                }
-                mgr.restore();
-                mgr.markImpossible(guessIdx);
-                continue;
             } else {
-                System.out.println("Remaining candidates: " + mgr.getCandidates().size());
+                System.out.println("Remaining candidates: " + game.candidateCount());
             }
-
         }
 
-        // 11) report solution
-        int sol = mgr.getSolution();
-        System.out.println("\n🎉 Solved! The country is: " + countries.get(sol).getName());
+        // 8) report solution
+        System.out.println("\n🎉 Solved! The country is: " + engine.name(game.solution()));
+        if (speculator != null) speculator.close();
         in.close();
     }
 }
@@ -0,0 +1,377 @@
+// GuessRanker.java
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ranks potential guesses by the Shannon entropy of their feedback over the
+ * current candidates and keeps only the best k.
+ *
+ * Large rankings are split across a ForkJoinPool; each worker scores its
+ * slice with a thread-local histogram into its own bounded heap, and the
+ * heaps are merged on the way back up. Small rankings run serially.
+ */
+public class GuessRanker {
+    /** Below this many (guess, candidate) pairs the fork/join overhead is not worth it. */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    /** Minimum pair evaluations per leaf task. */
+    private static final int LEAF_PAIRS = 1 << 12;
+
+    private static final ThreadLocal<int[]> SCRATCH =
+            ThreadLocal.withInitial(() -> new int[FeedbackTable.CODE_COUNT]);
+
+    private final FeedbackTable table;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param table precomputed feedback codes
+     * @param pool  pool used for parallel rankings, or null to always rank serially
+     */
+    public GuessRanker(FeedbackTable table, ForkJoinPool pool) {
+        this.table = table;
+        this.pool  = pool;
+    }
+
+    /** Creates a ranker that parallelizes on the common ForkJoinPool. */
+    public GuessRanker(FeedbackTable table) {
+        this(table, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Scores every guess and writes the best k, highest entropy first, into
+     * outIdx/outScore. Ties are broken towards the lower country index.
+     *
+     * @param guesses    guess indices; only the first guessCount entries are read
+     * @param guessCount number of guesses to score
+     * @param candidates candidate indices; only the first candCount entries are read
+     * @param candCount  number of remaining candidates
+     * @param k          maximum number of results
+     * @param outIdx     receives the ranked guess indices (length ≥ k)
+     * @param outScore   receives the matching entropies in bits (length ≥ k)
+     * @return the number of results written, min(k, guessCount)
+     */
+    public int rank(int[] guesses, int guessCount,
+                    int[] candidates, int candCount,
+                    int k, int[] outIdx, double[] outScore) {
+        if (k <= 0 || guessCount == 0) return 0;
+        TopK top;
+        if (pool == null || (long) guessCount * candCount < PARALLEL_THRESHOLD) {
+            top = new TopK(k);
+            scoreRange(guesses, 0, guessCount, candidates, candCount, SCRATCH.get(), top, false);
+        } else {
+            int leaf = Math.max(1, LEAF_PAIRS / Math.max(1, candCount));
+            top = pool.invoke(new RankTask(guesses, 0, guessCount, candidates, candCount, k, leaf));
+        }
+        return top.drainSorted(outIdx, outScore);
+    }
+
+    /**
+     * Serial, allocation-free ranking into caller-owned scratch space.
+     * The results are left in scratch.top (call drainSorted to read them).
+     */
+    public void rankSerial(int[] guesses, int guessCount,
+                           int[] candidates, int candCount,
+                           Scratch scratch) {
+        scratch.top.clear();
+        scoreRange(guesses, 0, guessCount, candidates, candCount, scratch.hist, scratch.top, scratch.interruptible);
+    }
+
+    /**
+     * Serial, allocation-free counterpart of {@link #rankPruned}; the
+     * results are added to scratch.top.
+     */
+    public void rankPrunedSerial(int[] guesses, int from, int to,
+                                 BoundedScorer scorer, double bar, Scratch scratch) {
+        pruneRange(guesses, from, to, scorer, bar, scratch.top, null, scratch.interruptible);
+    }
+
+    /**
+     * Branch-and-bound ranking for scores too costly to compute for every
+     * guess, e.g. {@link BandScorer} over all unguessed countries rather than
+     * just the candidates. A guess is only scored exactly if its bound beats
+     * bar and could still make the top k; results are identical to offering
+     * every guess in the range whose score exceeds bar.
+     *
+     * @param guesses       guess indices; entries from..to-1 are read
+     * @param scorer        bounds and scores guesses; called from pool threads
+     * @param bar           only guesses scoring strictly above this are offered
+     * @param pairsPerGuess rough work per exact score, for splitting the range
+     * @param top           receives the results; entries already in it take part in pruning
+     */
+    public void rankPruned(int[] guesses, int from, int to,
+                           BoundedScorer scorer, double bar, int pairsPerGuess, TopK top) {
+        if (pool == null || (long) (to - from) * pairsPerGuess < PARALLEL_THRESHOLD) {
+            pruneRange(guesses, from, to, scorer, bar, top, null, false);
+            return;
+        }
+        AtomicLong shared = new AtomicLong(Double.doubleToLongBits(top.threshold()));
+        int leaf = Math.max(1, LEAF_PAIRS / Math.max(1, pairsPerGuess));
+        top.mergeFrom(pool.invoke(new PrunedTask(guesses, from, to, scorer, bar, top.capacity(), leaf, shared)));
+    }
+
+    /** Scores the guesses whose bound can still make the top k and beat bar. */
+    private static void pruneRange(int[] guesses, int from, int to,
+                                   BoundedScorer scorer, double bar,
+                                   TopK top, AtomicLong shared, boolean interruptible) {
+        int scored = 0;
+        for (int i = from; i < to; i++) {
+            if (interruptible) checkInterrupt();
+            int g = guesses[i];
+            double bound = scorer.bound(g);
+            if (bound <= bar || bound < floor(top, shared) || top.rejects(g, bound)) continue;
+            double s = scorer.score(g);
+            scored++;
+            if (s > bar) top.offer(g, s);
+            if (shared != null && top.size() == top.capacity()) publish(shared, top.threshold());
+        }
+        if (Metrics.enabled()) Metrics.GUESSES_PRUNED.add(to - from - scored);
+    }
+
+    /** Abandons a serial ranking whose thread has been interrupted, e.g. a cancelled speculation. */
+    private static void checkInterrupt() {
+        if (Thread.currentThread().isInterrupted()) throw new CancellationException("ranking interrupted");
+    }
+
+    private static double floor(TopK top, AtomicLong shared) {
+        if (shared == null) return top.threshold();
+        return Math.max(top.threshold(), Double.longBitsToDouble(shared.get()));
+    }
+
+    /** Raises the shared pruning threshold; any full local heap is a valid lower bound on the k-th best. */
+    private static void publish(AtomicLong shared, double threshold) {
+        long bits = Double.doubleToLongBits(threshold);
+        long cur;
+        while (Double.longBitsToDouble(cur = shared.get()) < threshold) {
+            if (shared.compareAndSet(cur, bits)) return;
+        }
+    }
+
+    private void scoreRange(int[] guesses, int from, int to,
+                            int[] candidates, int candCount,
+                            int[] hist, TopK top, boolean interruptible) {
+        for (int i = from; i < to; i++) {
+            if (interruptible) checkInterrupt();
+            int g = guesses[i];
+            top.offer(g, EntropyCalculator.score(g, candidates, candCount, table, hist));
+        }
+    }
+
+    private final class RankTask extends RecursiveTask<TopK> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] guesses;
+        private final int from, to;
+        private final int[] candidates;
+        private final int candCount;
+        private final int k;
+        private final int leaf;
+
+        RankTask(int[] guesses, int from, int to,
+                 int[] candidates, int candCount, int k, int leaf) {
+            this.guesses    = guesses;
+            this.from       = from;
+            this.to         = to;
+            this.candidates = candidates;
+            this.candCount  = candCount;
+            this.k          = k;
+            this.leaf       = leaf;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from <= leaf) {
+                TopK top = new TopK(k);
+                scoreRange(guesses, from, to, candidates, candCount, SCRATCH.get(), top, false);
+                return top;
+            }
+            int mid = (from + to) >>> 1;
+            RankTask left = new RankTask(guesses, from, mid, candidates, candCount, k, leaf);
+            left.fork();
+            TopK right = new RankTask(guesses, mid, to, candidates, candCount, k, leaf).compute();
+            TopK merged = left.join();
+            merged.mergeFrom(right);
+            return merged;
+        }
+    }
+
+    private static final class PrunedTask extends RecursiveTask<TopK> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] guesses;
+        private final int from, to;
+        private final transient BoundedScorer scorer;
+        private final double bar;
+        private final int k;
+        private final int leaf;
+        private final AtomicLong shared;
+
+        PrunedTask(int[] guesses, int from, int to,
+                   BoundedScorer scorer, double bar, int k, int leaf, AtomicLong shared) {
+            this.guesses = guesses;
+            this.from    = from;
+            this.to      = to;
+            this.scorer  = scorer;
+            this.bar     = bar;
+            this.k       = k;
+            this.leaf    = leaf;
+            this.shared  = shared;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from <= leaf) {
+                TopK top = new TopK(k);
+                pruneRange(guesses, from, to, scorer, bar, top, shared, false);
+                return top;
+            }
+            int mid = (from + to) >>> 1;
+            PrunedTask left = new PrunedTask(guesses, from, mid, scorer, bar, k, leaf, shared);
+            left.fork();
+            TopK right = new PrunedTask(guesses, mid, to, scorer, bar, k, leaf, shared).compute();
+            TopK merged = left.join();
+            merged.mergeFrom(right);
+            return merged;
+        }
+    }
+
+    /**
+     * Scores guesses for {@link #rankPruned}. Both methods may be called
+     * concurrently from pool threads.
+     */
+    public interface BoundedScorer {
+        /** @return an upper bound on {@link #score}(g), cheaper to compute */
+        double bound(int g);
+
+        /** @return the exact score of guess g */
+        double score(int g);
+    }
+
+    /** Per-caller buffers for the serial ranking paths. */
+    public static final class Scratch {
+        final int[] hist = new int[FeedbackTable.CODE_COUNT];
+        public final TopK top;
+        /** If set, serial rankings throw CancellationException once their thread is interrupted. */
+        final boolean interruptible;
+
+        /** @param k number of results to keep */
+        public Scratch(int k) {
+            this(k, false);
+        }
+
+        Scratch(int k, boolean interruptible) {
+            this.top           = new TopK(k);
+            this.interruptible = interruptible;
+        }
+    }
+
+    /**
+     * Bounded min-heap of (guess, score) pairs holding the best k offered so
+     * far. The root is the worst retained entry, so rejecting a guess is O(1).
+     */
+    public static final class TopK {
+        private final int[] idx;
+        private final double[] score;
+        private int size;
+
+        public TopK(int k) {
+            this.idx   = new int[k];
+            this.score = new double[k];
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int capacity() {
+            return idx.length;
+        }
+
+        /** @return true if the heap is full and (g, s) would not displace its worst entry */
+        public boolean rejects(int g, double s) {
+            return size == idx.length && !worse(idx[0], score[0], g, s);
+        }
+
+        /** @return the highest score held, or -∞ if empty */
+        public double best() {
+            double best = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) best = Math.max(best, score[i]);
+            return best;
+        }
+
+        /** @return the score a new entry must beat once full, or -∞ while filling */
+        public double threshold() {
+            return size == idx.length ? score[0] : Double.NEGATIVE_INFINITY;
+        }
+
+        public void offer(int g, double s) {
+            if (size < idx.length) {
+                idx[size] = g;
+                score[size] = s;
+                siftUp(size++);
+            } else if (worse(idx[0], score[0], g, s)) {
+                idx[0] = g;
+                score[0] = s;
+                siftDown(0);
+            }
+        }
+
+        void mergeFrom(TopK other) {
+            for (int i = 0; i < other.size; i++) offer(other.idx[i], other.score[i]);
+        }
+
+        /**
+         * Empties the heap into the arrays, best first.
+         *
+         * @return the number of entries written
+         */
+        public int drainSorted(int[] outIdx, double[] outScore) {
+            int n = size;
+            for (int i = n - 1; i >= 0; i--) {
+                outIdx[i]   = idx[0];
+                outScore[i] = score[0];
+                size--;
+                idx[0]   = idx[size];
+                score[0] = score[size];
+                siftDown(0);
+            }
+            return n;
+        }
+
+        /** Orders by score, then prefers the lower index. */
+        private static boolean worse(int ga, double sa, int gb, double sb) {
+            return sa < sb || (sa == sb && ga > gb);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (!worse(idx[i], score[i], idx[p], score[p])) break;
+                swap(i, p);
+                i = p;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1;
+                if (l >= size) break;
+                int m = l;
+                if (l + 1 < size && worse(idx[l + 1], score[l + 1], idx[l], score[l])) m = l + 1;
+                if (!worse(idx[m], score[m], idx[i], score[i])) break;
+                swap(i, m);
+                i = m;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int ti = idx[a]; idx[a] = idx[b]; idx[b] = ti;
+            double ts = score[a]; score[a] = score[b]; score[b] = ts;
+        }
+    }
+}
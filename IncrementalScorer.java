@@ -0,0 +1,105 @@
+// IncrementalScorer.java
+
+import java.util.Arrays;
+
+/**
+ * Keeps a feedback-code histogram for every potential guess over the current
+ * candidate set and updates it as candidates come and go, so ranking does not
+ * rescan the surviving candidates each turn.
+ *
+ * {@link #sync} diffs the caller's candidate bitset against a private mirror
+ * and adjusts only the changed targets' contributions: removals from
+ * applyFeedback and re-additions from restore() are handled alike. A turn
+ * costs O(changed × n) plus O(n × CODE_COUNT) to re-evaluate entropies,
+ * instead of O(candidates × n). Scores are bit-identical to
+ * {@link EntropyCalculator#score(int, int[], int, FeedbackTable, int[])}.
+ *
+ * Not thread-safe; one instance per game.
+ */
+public class IncrementalScorer {
+    private final FeedbackTable table;
+    private final int n;
+    /** hist[g * CODE_COUNT + code + 1] = candidates for which guess g yields code */
+    private final int[] hist;
+    /** Candidate set the histograms currently describe. */
+    private final long[] mirror;
+    /** Scratch for {@link FeedbackTable#column}; null when codes are precomputed and read in place */
+    private final byte[] column;
+    private int count;
+
+    /** Starts with an empty candidate set; the first {@link #sync} fills it. */
+    public IncrementalScorer(FeedbackTable table) {
+        this.table  = table;
+        this.n      = table.size();
+        this.hist   = new int[n * FeedbackTable.CODE_COUNT];
+        this.mirror = new long[(n + 63) >>> 6];
+        this.column = table.isPrecomputed() ? null : new byte[n];
+    }
+
+    /**
+     * Brings the histograms in line with a candidate bitset.
+     *
+     * @param words candidate bitset, 64 indices per word
+     * @param total number of set bits in words
+     */
+    public void sync(long[] words, int total) {
+        int changed = 0;
+        for (int w = 0; w < mirror.length; w++) changed += Long.bitCount(mirror[w] ^ words[w]);
+        if (changed == 0) return;
+
+        if (changed > total) {
+            // Cheaper to tally the survivors from scratch than to apply each change
+            Arrays.fill(hist, 0);
+            Arrays.fill(mirror, 0L);
+        }
+        for (int w = 0; w < mirror.length; w++) {
+            long removed = mirror[w] & ~words[w];
+            while (removed != 0) {
+                apply((w << 6) + Long.numberOfTrailingZeros(removed), -1);
+                removed &= removed - 1;
+            }
+            long added = words[w] & ~mirror[w];
+            while (added != 0) {
+                apply((w << 6) + Long.numberOfTrailingZeros(added), 1);
+                added &= added - 1;
+            }
+            mirror[w] = words[w];
+        }
+        count = total;
+    }
+
+    /** Adds (delta = 1) or removes (delta = -1) one target's code under every guess. */
+    private void apply(int target, int delta) {
+        if (column != null) {
+            // On-demand codes: one distance row instead of a read from every guess's tile
+            table.column(target, column);
+            for (int g = 0, base = 0; g < n; g++, base += FeedbackTable.CODE_COUNT) {
+                hist[base + column[g] + 1] += delta;
+            }
+            return;
+        }
+        for (int g = 0, base = 0; g < n; g++, base += FeedbackTable.CODE_COUNT) {
+            hist[base + table.code(g, target) + 1] += delta;
+        }
+    }
+
+    /** @return the entropy (bits) of guessIdx's feedback over the synced candidates */
+    public double score(int guessIdx) {
+        return table.entropy(hist, guessIdx * FeedbackTable.CODE_COUNT, count);
+    }
+
+    /**
+     * Offers every guess to the heap, which is cleared first.
+     *
+     * @param guesses    guess indices; only the first guessCount entries are read
+     * @param guessCount number of guesses to score
+     * @param top        receives the best guesses
+     */
+    public void rank(int[] guesses, int guessCount, GuessRanker.TopK top) {
+        top.clear();
+        for (int i = 0; i < guessCount; i++) {
+            top.offer(guesses[i], score(guesses[i]));
+        }
+        if (Metrics.enabled()) Metrics.SCORE_CALLS.add(guessCount);
+    }
+}
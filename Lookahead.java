@@ -0,0 +1,240 @@
+// Lookahead.java
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Re-orders the best entropy suggestions by the expected number of guesses
+ * still needed, searched a few plies deep.
+ *
+ * One-ply entropy is greedy: it maximizes the information from the next
+ * guess, not the number of guesses to finish. Here a guess g over candidates
+ * S costs
+ * <pre>
+ *   E(g, S) = 1 + Σ_code |S_code \ {g}| / |S| · E(S_code \ {g})
+ * </pre>
+ * where S_code are the candidates that would answer g with that feedback
+ * code (see {@link FeedbackTable}), and E(S) is the cost of the best of the
+ * {@link #width} highest-entropy candidates in S, one ply shallower. At depth
+ * 0, E(S) is estimated as 1 + ½·log2|S| (exact for one and two candidates).
+ *
+ * Partitioning by code is an approximation. A real turn keeps every
+ * candidate within the distance tolerance of the reading
+ * ({@link CandidateManager#applyFeedback}). Those bands span several codes
+ * and overlap from one target to the next, so the game leaves larger,
+ * overlapping sets rather than the S_code. E is therefore the cost under
+ * code-exact feedback, the same model the one-ply entropy scores use for
+ * candidate guesses. It only re-orders suggestions and never filters.
+ *
+ * The search deepens one ply at a time until {@link #maxDepth} or the
+ * wall-clock budget (if any) runs out, and always answers from the deepest
+ * completed iteration, so it is anytime. With no budget every call searches
+ * to maxDepth, and the order depends only on the position. Root moves are searched in parallel.
+ * Sub-results are memoized by candidate bitset and depth, and are shared
+ * across turns and sessions; they do not depend on the budget.
+ */
+public class Lookahead {
+    /** Clears the memo once it holds this many sets. */
+    private static final int MEMO_LIMIT = 1 << 20;
+
+    private final FeedbackTable table;
+    private final int width;
+    private final int maxDepth;
+    private final long budgetNanos;
+    private final ForkJoinPool pool;
+    private final Map<Key, Double> memo = new ConcurrentHashMap<>();
+
+    /** Thrown through the recursion when the budget is spent; no stack trace. */
+    private static final class Timeout extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Timeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Timeout TIMEOUT = new Timeout();
+
+    /** A candidate set (as a bitset) searched to a given depth. */
+    private static final class Key {
+        final long[] bits;
+        final int depth;
+        final int hash;
+
+        Key(long[] bits, int depth) {
+            this.bits  = bits;
+            this.depth = depth;
+            this.hash  = 31 * Arrays.hashCode(bits) + depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return k.depth == depth && Arrays.equals(k.bits, bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * @param table        precomputed feedback codes
+     * @param width        suggestions re-ordered at the root, and guesses tried at each deeper node
+     * @param maxDepth     plies searched at most (1 = expected cost after the next guess)
+     * @param budgetMillis wall-clock budget per call to {@link #reorder}, or 0 to always
+     *                     search to maxDepth, so results do not depend on timing
+     * @param pool         pool for searching root moves in parallel, or null for serial
+     */
+    public Lookahead(FeedbackTable table, int width, int maxDepth, long budgetMillis, ForkJoinPool pool) {
+        if (width < 1 || maxDepth < 1) throw new IllegalArgumentException("width and maxDepth must be positive");
+        if (budgetMillis < 0) throw new IllegalArgumentException("budgetMillis must not be negative");
+        this.table       = table;
+        this.width       = width;
+        this.maxDepth    = maxDepth;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.pool        = pool;
+    }
+
+    /** @return how many entropy suggestions {@link #reorder} expects */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Sorts moves by expected remaining guesses, fewest first. Moves whose
+     * cost ties keep their incoming (entropy) order, so with no completed
+     * iteration the order is unchanged.
+     *
+     * @param candidates candidate indices; only the first candCount entries are read
+     * @param candCount  number of remaining candidates
+     * @param moves      guess indices, best entropy first; reordered in place
+     * @param scores     the moves' entropies; permuted alongside moves
+     * @param moveCount  number of moves
+     * @return the depth of the deepest completed iteration (0 if none completed)
+     */
+    public int reorder(int[] candidates, int candCount, int[] moves, double[] scores, int moveCount) {
+        if (moveCount < 2 || candCount < 3) return 0;
+        if (memo.size() > MEMO_LIMIT) memo.clear();
+        long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        int[] set = Arrays.copyOf(candidates, candCount);
+        Arrays.sort(set);
+
+        double[] cost = null;
+        int completed = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            double[] next = new double[moveCount];
+            int d = depth;
+            try {
+                if (pool == null) {
+                    for (int i = 0; i < moveCount; i++) next[i] = guessCost(moves[i], set, candCount, d - 1, deadline);
+                } else {
+                    pool.submit(() -> IntStream.range(0, moveCount).parallel()
+                            .forEach(i -> next[i] = guessCost(moves[i], set, candCount, d - 1, deadline)))
+                        .get();
+                }
+            } catch (Timeout e) {
+                break;
+            } catch (Exception e) {
+                if (e.getCause() instanceof Timeout) break;
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                throw new IllegalStateException("Lookahead failed", e);
+            }
+            cost = next;
+            completed = depth;
+        }
+        if (cost == null) return 0;
+
+        // Stable insertion sort by cost: moveCount is small
+        for (int i = 1; i < moveCount; i++) {
+            int m = moves[i];
+            double s = scores[i], c = cost[i];
+            int j = i - 1;
+            while (j >= 0 && cost[j] > c) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                cost[j + 1] = cost[j];
+                j--;
+            }
+            moves[j + 1] = m;
+            scores[j + 1] = s;
+            cost[j + 1] = c;
+        }
+        return completed;
+    }
+
+    /**
+     * E(g, S) for a set given as ascending indices, with sub-sets searched to depth.
+     * Stops early once the partial sum reaches cutoff.
+     */
+    private double guessCost(int g, int[] set, int size, int depth, long deadline) {
+        return guessCost(g, set, size, depth, deadline, Double.POSITIVE_INFINITY);
+    }
+
+    private double guessCost(int g, int[] set, int size, int depth, long deadline, double cutoff) {
+        if (deadline != Long.MAX_VALUE && System.nanoTime() > deadline) throw TIMEOUT;
+        // Counting sort of S \ {g} by code, ascending index within each code
+        int[] start = new int[FeedbackTable.CODE_COUNT + 1];
+        for (int i = 0; i < size; i++) {
+            if (set[i] != g) start[table.code(g, set[i]) + 2]++;
+        }
+        for (int c = 1; c <= FeedbackTable.CODE_COUNT; c++) start[c] += start[c - 1];
+        int[] grouped = new int[start[FeedbackTable.CODE_COUNT]];
+        int[] fill = Arrays.copyOf(start, FeedbackTable.CODE_COUNT);
+        for (int i = 0; i < size; i++) {
+            if (set[i] != g) grouped[fill[table.code(g, set[i]) + 1]++] = set[i];
+        }
+
+        double total = 1.0;
+        for (int c = 0; c < FeedbackTable.CODE_COUNT; c++) {
+            int from = start[c], m = start[c + 1] - from;
+            if (m == 0) continue;
+            total += (double) m / size * setCost(grouped, from, m, depth, deadline);
+            if (total >= cutoff) return total;
+        }
+        return total;
+    }
+
+    /** E(S) for S = part[from .. from + m), ascending. */
+    private double setCost(int[] part, int from, int m, int depth, long deadline) {
+        if (m == 1) return 1.0;
+        if (m == 2) return 1.5;
+        if (depth == 0) return estimate(m);
+
+        long[] bits = new long[(table.size() + 63) >>> 6];
+        for (int i = from; i < from + m; i++) bits[part[i] >>> 6] |= 1L << part[i];
+        Key key = new Key(bits, depth);
+        Double known = memo.get(key);
+        if (known != null) return known;
+
+        int[] set = Arrays.copyOfRange(part, from, from + m);
+        int[] guesses = topByEntropy(set, m);
+        double best = Double.POSITIVE_INFINITY;
+        for (int g : guesses) {
+            best = Math.min(best, guessCost(g, set, m, depth - 1, deadline, best));
+        }
+        memo.put(key, best);
+        return best;
+    }
+
+    /** @return up to width members of set, highest entropy over set first */
+    private int[] topByEntropy(int[] set, int m) {
+        int keep = Math.min(width, m);
+        GuessRanker.TopK top = new GuessRanker.TopK(keep);
+        int[] hist = new int[FeedbackTable.CODE_COUNT];
+        for (int g : set) top.offer(g, EntropyCalculator.score(g, set, m, table, hist));
+        int[] out = new int[keep];
+        top.drainSorted(out, new double[keep]);
+        return out;
+    }
+
+    /** Depth-0 estimate of the guesses needed for m candidates. */
+    private static double estimate(int m) {
+        return 1.0 + 0.5 * Math.log(m) / Math.log(2);
+    }
+}
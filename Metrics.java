@@ -0,0 +1,227 @@
+// Metrics.java
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * In-process counters and histograms for the solver's hot paths, plus the
+ * JFR events emitted alongside them.
+ *
+ * Recording into the registry is off until {@link #enable()} is called; every
+ * call site checks {@link #enabled()} first, so a disabled registry costs one
+ * field read. The JFR events are independent of the registry and follow the
+ * usual JFR rules: they are only committed while a recording with them
+ * enabled is running (e.g. java -XX:StartFlightRecording ...). Call sites
+ * check {@link #RANK_EVENT} or {@link #FEEDBACK_EVENT} before allocating
+ * one, so the hot paths allocate nothing when no recording wants them.
+ *
+ * All recording methods are lock-free and safe to call from any thread.
+ */
+public final class Metrics {
+    private static volatile boolean enabled;
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<Histogram> HISTOGRAMS = new ArrayList<>();
+
+    /** Guesses scored, by EntropyCalculator, an IncrementalScorer or a BandScorer. */
+    public static final Counter SCORE_CALLS        = counter("score.calls");
+    /** Calls to FeedbackEncoding.encode (model builds and the Set-based scorer). */
+    public static final Counter ENCODE_CALLS       = counter("encode.calls");
+    /** Guesses skipped by branch-and-bound ranking without an exact score. */
+    public static final Counter GUESSES_PRUNED     = counter("rank.pruned");
+    /** Turns rolled back with restore() + markImpossible() because nothing matched. */
+    public static final Counter NO_MATCH_FALLBACKS = counter("feedback.noMatch");
+    /** Guesses excluded without feedback by Session.reject(), e.g. after an unreadable distance. */
+    public static final Counter REJECTED_GUESSES   = counter("feedback.rejected");
+    /** Turns whose suggestions were already precomputed by a Speculator. */
+    public static final Counter SPECULATION_HITS   = counter("speculation.hits");
+    /** Turns a Speculator had not precomputed. */
+    public static final Counter SPECULATION_MISSES = counter("speculation.misses");
+
+    /** Wall-clock time of each suggest() call, in nanoseconds. */
+    public static final Histogram RANK_NANOS        = histogram("rank.nanos");
+    /** Candidate count going into each applyFeedback call. */
+    public static final Histogram CANDIDATES_BEFORE = histogram("feedback.candidatesBefore");
+    /** Candidate count coming out of each applyFeedback call. */
+    public static final Histogram CANDIDATES_AFTER  = histogram("feedback.candidatesAfter");
+
+    /** JFR type of {@link RankEvent}; isEnabled() is true while a recording wants it. */
+    static final EventType RANK_EVENT     = EventType.getEventType(RankEvent.class);
+    /** JFR type of {@link FeedbackEvent}; isEnabled() is true while a recording wants it. */
+    static final EventType FEEDBACK_EVENT = EventType.getEventType(FeedbackEvent.class);
+
+    private Metrics() { }
+
+    /** Starts recording into the registry. */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /** @return true if call sites should record into the registry */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    private static Counter counter(String name) {
+        Counter c = new Counter(name);
+        COUNTERS.add(c);
+        return c;
+    }
+
+    private static Histogram histogram(String name) {
+        Histogram h = new Histogram(name);
+        HISTOGRAMS.add(h);
+        return h;
+    }
+
+    /** @return one line per registered metric, for logs */
+    public static String report() {
+        StringBuilder sb = new StringBuilder("metrics:");
+        for (Counter c : COUNTERS) {
+            sb.append(String.format("%n  %-28s %d", c.name, c.sum()));
+        }
+        for (Histogram h : HISTOGRAMS) {
+            sb.append(String.format("%n  %-28s count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                    h.name, h.count(), h.mean(),
+                    h.percentile(50), h.percentile(90), h.percentile(99), h.max()));
+        }
+        return sb.toString();
+    }
+
+    /** Monotonic event count. */
+    public static final class Counter {
+        final String name;
+        private final LongAdder adder = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            adder.increment();
+        }
+
+        public void add(long x) {
+            adder.add(x);
+        }
+
+        public long sum() {
+            return adder.sum();
+        }
+    }
+
+    /**
+     * Distribution of non-negative longs in log-linear buckets, HdrHistogram
+     * style: values below 32 are exact, larger values fall into one of 32
+     * sub-buckets per power of two, so percentiles are within ~3%.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB      = 1 << SUB_BITS;
+        private static final int BUCKETS  = SUB * (64 - SUB_BITS);
+
+        final String name;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum   = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        private Histogram(String name) {
+            this.name = name;
+        }
+
+        /** Records one value; negative values count as 0. */
+        public void record(long value) {
+            if (value < 0) value = 0;
+            counts.incrementAndGet(bucket(value));
+            total.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        private static int bucket(long v) {
+            if (v < SUB) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return SUB * (shift + 1) + (int) (v >>> shift) - SUB;
+        }
+
+        /** @return the largest value that falls into bucket b */
+        private static long highestIn(int b) {
+            if (b < SUB) return b;
+            int shift = b / SUB - 1;
+            long first = (long) (b % SUB + SUB) << shift;
+            return first + (1L << shift) - 1;
+        }
+
+        public long count() {
+            return total.sum();
+        }
+
+        public double mean() {
+            long n = total.sum();
+            return n == 0 ? 0.0 : (double) sum.sum() / n;
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * @param p percentile in [0, 100]
+         * @return an upper bound on the p-th percentile (0 if nothing was recorded)
+         */
+        public long percentile(double p) {
+            long n = 0;
+            for (int b = 0; b < BUCKETS; b++) n += counts.get(b);
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts.get(b);
+                if (seen >= rank) return Math.min(highestIn(b), max());
+            }
+            return max();
+        }
+    }
+
+    /** One suggest() call. */
+    @Name("globle.Rank")
+    @Label("Guess Ranking")
+    @Category("Globle")
+    @Description("Ranking of the next guesses for one turn")
+    static final class RankEvent extends Event {
+        @Label("Candidates")
+        int candidates;
+        @Label("Requested")
+        int k;
+        @Label("Suggestions")
+        int suggestions;
+    }
+
+    /** One applyFeedback() call. */
+    @Name("globle.Feedback")
+    @Label("Feedback")
+    @Category("Globle")
+    @Description("Candidate filtering for one guess")
+    static final class FeedbackEvent extends Event {
+        @Label("Guess")
+        int guess;
+        @Label("Adjacent")
+        boolean adjacent;
+        @Label("Miles")
+        double miles;
+        @Label("Candidates Before")
+        int before;
+        @Label("Candidates After")
+        int after;
+    }
+}
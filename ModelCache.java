@@ -0,0 +1,183 @@
+// ModelCache.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Flat binary cache of the DistanceMatrix and adjacency graph, so that
+ * short-lived processes skip the O(n²) haversine pass and the neighbor
+ * search on startup.
+ *
+ * File layout (little-endian):
+ * <pre>
+ *   int   magic   'GLMC'
+ *   int   version
+ *   long  key     (see {@link #key})
+ *   int   n
+ *   int   edges   total neighbor entries
+ *   float[n(n-1)/2]  upper-triangular distances, row-major (km)
+ *   int[n+1]         CSR row offsets into the neighbor array
+ *   int[edges]       CSR neighbor indices
+ * </pre>
+ * The distance block is mapped and used in place; no element is parsed.
+ */
+public class ModelCache {
+    private static final int MAGIC   = 0x474C4D43; // "GLMC"
+    private static final int VERSION = 3;
+    private static final int HEADER  = 4 + 4 + 8 + 4 + 4;
+
+    private final DistanceMatrix D;
+    private final AdjacencyGraph adjacency;
+
+    private ModelCache(DistanceMatrix D, AdjacencyGraph adjacency) {
+        this.D         = D;
+        this.adjacency = adjacency;
+    }
+
+    public DistanceMatrix getDistanceMatrix() {
+        return D;
+    }
+
+    public AdjacencyGraph getAdjacency() {
+        return adjacency;
+    }
+
+    /** FNV-1a 64 checksum of a file's bytes. */
+    public static long checksum(Path path) throws IOException {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : Files.readAllBytes(path)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * Cache key for a dataset and the parameters the cached model depends on.
+     *
+     * @param adjacencyKey identifies the adjacency graph: the neighbor count k of a
+     *                     k-nearest graph, or the checksum of a border file
+     */
+    public static long key(Path csvPath, long adjacencyKey) throws IOException {
+        long h = checksum(csvPath);
+        for (long p : new long[] { VERSION, adjacencyKey }) {
+            h ^= p;
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * Maps a cache file read-only, one mapping per section.
+     *
+     * @return the cached model, or null if the file is missing, malformed,
+     *         or was written for a different key
+     */
+    public static ModelCache load(Path path, long key) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER) return null;
+            MappedByteBuffer header = map(ch, FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != key) return null;
+            int n     = header.getInt(16);
+            int edges = header.getInt(20);
+            if (n < 0 || edges < 0) return null;
+            long triBytes     = 4L * n * (n - 1) / 2;
+            long offsetsBytes = 4L * (n + 1);
+            long targetsBytes = 4L * edges;
+            if (ch.size() != HEADER + triBytes + offsetsBytes + targetsBytes) return null;
+            if (triBytes > Integer.MAX_VALUE) return null; // larger than one mapping can hold
+
+            long at = HEADER;
+            DistanceMatrix D = new DistanceMatrix(n, map(ch, FileChannel.MapMode.READ_ONLY, at, triBytes).asFloatBuffer());
+            at += triBytes;
+            IntBuffer offsets = map(ch, FileChannel.MapMode.READ_ONLY, at, offsetsBytes).asIntBuffer();
+            at += offsetsBytes;
+            IntBuffer targets = map(ch, FileChannel.MapMode.READ_ONLY, at, targetsBytes).asIntBuffer();
+
+            int[] offsetArr = new int[n + 1];
+            int[] targetArr = new int[edges];
+            offsets.get(offsetArr);
+            targets.get(targetArr);
+            AdjacencyGraph adjacency;
+            try {
+                adjacency = new AdjacencyGraph(offsetArr, targetArr);
+            } catch (IllegalArgumentException e) {
+                return null; // corrupt CSR block
+            }
+            return new ModelCache(D, adjacency);
+        }
+    }
+
+    /**
+     * Maps one section of a cache file. Sections are mapped separately
+     * because a single mapping cannot exceed 2 GiB.
+     */
+    private static MappedByteBuffer map(FileChannel ch, FileChannel.MapMode mode,
+                                        long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Cache section of " + length + " bytes is too large to map");
+        }
+        MappedByteBuffer buf = ch.map(mode, offset, length);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    /**
+     * Writes the model to path, replacing any existing file.
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if D does not store its distances (a TiledDistanceMatrix)
+     */
+    public static long save(Path path, long key,
+                            DistanceMatrix D,
+                            AdjacencyGraph adjacency) throws IOException {
+        if (!D.isStored()) {
+            throw new IllegalArgumentException("Only a stored DistanceMatrix can be cached, not " + D.getClass().getSimpleName());
+        }
+        int n = D.size();
+        int edges = adjacency.edgeCount();
+        long triBytes     = 4L * DistanceMatrix.triangleSize(n);
+        long offsetsBytes = 4L * (n + 1);
+        long targetsBytes = 4L * edges;
+        long size = HEADER + triBytes + offsetsBytes + targetsBytes;
+
+        // A private temp file per writer, so two processes saving at once cannot clobber each other
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putLong(key).putInt(n).putInt(edges).flip();
+                while (header.hasRemaining()) ch.write(header, HEADER - header.remaining());
+
+                long at = HEADER;
+                MappedByteBuffer tri = map(ch, FileChannel.MapMode.READ_WRITE, at, triBytes);
+                tri.asFloatBuffer().put(D.triangle());
+                tri.force();
+                at += triBytes;
+
+                MappedByteBuffer csr = map(ch, FileChannel.MapMode.READ_WRITE,
+                        at, offsetsBytes + targetsBytes);
+                for (int i = 0; i <= n; i++) csr.putInt(adjacency.offset(i));
+                for (int e = 0; e < edges; e++) csr.putInt(adjacency.target(e));
+                csr.force();
+                ch.force(true);
+            }
+            // Publish atomically so concurrent starters never map a half-written file
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,208 @@
+// OpeningBook.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Precomputed rankings for the first two turns, stored in a compact binary
+ * file and memory-mapped at startup.
+ *
+ * The book holds the top suggestions for the opening position and for every
+ * position reachable by playing the best opening guess and receiving
+ * truthful feedback for some target. Positions are keyed by
+ * {@link CandidateManager#stateHash()}, so a reply is found whenever the
+ * player's reading leads to the same candidate set; anything else falls back
+ * to live ranking.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   int   magic      'GLOB'
+ *   int   version
+ *   long  datasetKey (see {@link #datasetKey})
+ *   int   n          number of countries
+ *   int   k          suggestions per entry
+ *   int   entries
+ *   entries × { long stateHash; int[k] guess (-1 = none); float[k] bits }, sorted by stateHash
+ * </pre>
+ */
+public class OpeningBook {
+    private static final int MAGIC   = 0x474C4F42; // "GLOB"
+    private static final int VERSION = 3;
+    private static final int HEADER  = 4 + 4 + 8 + 4 + 4 + 4;
+
+    /** Suggestions stored per position. */
+    public static final int BOOK_K = 5;
+
+    private final ByteBuffer buf;
+    private final int k;
+    private final int entries;
+    private final int entrySize;
+
+    private OpeningBook(ByteBuffer buf, int k, int entries) {
+        this.buf       = buf;
+        this.k         = k;
+        this.entries   = entries;
+        this.entrySize = 8 + 8 * k;
+    }
+
+    /**
+     * Hashes the dataset and every parameter that affects rankings, so a book
+     * built for other inputs is detected as stale.
+     *
+     * @param adjacencyKey identifies the adjacency graph: the neighbor count k of a
+     *                     k-nearest graph, or the checksum of a border file
+     */
+    public static long datasetKey(Path csvPath,
+                                  long adjacencyKey,
+                                  double toleranceMiles,
+                                  double lambdaKm,
+                                  boolean rankAll) throws IOException {
+        long h = ModelCache.checksum(csvPath);
+        long[] params = {
+                VERSION,
+                adjacencyKey,
+                Double.doubleToLongBits(toleranceMiles),
+                Double.doubleToLongBits(lambdaKm),
+                rankAll ? 1 : 0
+        };
+        for (long p : params) {
+            h ^= p;
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * Maps an existing book read-only.
+     *
+     * @return the book, or null if the file is missing, malformed, or was
+     *         built for a different dataset key or country count
+     */
+    public static OpeningBook open(Path path, long datasetKey, int n) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER) return null;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) return null;
+            if (buf.getLong(8) != datasetKey || buf.getInt(16) != n) return null;
+            int k       = buf.getInt(20);
+            int entries = buf.getInt(24);
+            if (k <= 0 || ch.size() != HEADER + (long) entries * (8 + 8 * k)) return null;
+            return new OpeningBook(buf, k, entries);
+        }
+    }
+
+    /**
+     * Builds the depth-2 book offline and writes it to path.
+     *
+     * @param engine     the engine whose policy the book should reproduce
+     * @param datasetKey key from {@link #datasetKey} for the engine's inputs
+     * @param path       destination file, replaced atomically
+     * @return the number of positions written
+     */
+    public static int build(SolverEngine engine, long datasetKey, Path path) throws IOException {
+        SolverEngine serial = engine.withOpeningBook(null).withParallelRanking(false);
+        SolverEngine.Session game = serial.newSession();
+        Map<Long, float[]> scores = new TreeMap<>(Long::compareUnsigned);
+        Map<Long, int[]> guesses  = new TreeMap<>(Long::compareUnsigned);
+
+        int opening = record(game, guesses, scores)[0];
+        if (opening < 0) throw new IllegalStateException("No opening guess to build a book from");
+
+        for (int t = 0; t < serial.size(); t++) {
+            if (t == opening) continue;
+            game.reset();
+            boolean adjacent = GameSimulator.isAdjacent(serial, opening, t);
+            double miles = adjacent ? 0 : GameSimulator.trueMiles(serial, opening, t);
+            if (game.submit(opening, adjacent, miles) < 0) continue;
+            if (!guesses.containsKey(game.stateHash())) record(game, guesses, scores);
+        }
+
+        int entries = guesses.size();
+        ByteBuffer out = ByteBuffer.allocate(HEADER + entries * (8 + 8 * BOOK_K));
+        out.putInt(MAGIC).putInt(VERSION).putLong(datasetKey)
+           .putInt(serial.size()).putInt(BOOK_K).putInt(entries);
+        for (Map.Entry<Long, int[]> e : guesses.entrySet()) {
+            out.putLong(e.getKey());
+            for (int g : e.getValue()) out.putInt(g);
+            for (float s : scores.get(e.getKey())) out.putFloat(s);
+        }
+        out.flip();
+        // Never truncate the live file: a running solver may have it mapped
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) ch.write(out);
+                ch.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return entries;
+    }
+
+    private static int[] record(SolverEngine.Session game,
+                               Map<Long, int[]> guesses,
+                               Map<Long, float[]> scores) {
+        int[] g   = new int[BOOK_K];
+        float[] s = new float[BOOK_K];
+        int count = game.suggest(BOOK_K);
+        for (int i = 0; i < BOOK_K; i++) {
+            g[i] = i < count ? game.suggestion(i) : -1;
+            s[i] = i < count ? (float) game.suggestionScore(i) : 0f;
+        }
+        guesses.put(game.stateHash(), g);
+        scores.put(game.stateHash(), s);
+        return g;
+    }
+
+    /** @return the number of suggestions stored per position */
+    public int k() {
+        return k;
+    }
+
+    /**
+     * Looks up a position without allocating.
+     *
+     * @param stateHash {@link CandidateManager#stateHash()} of the position
+     * @param max       maximum suggestions to copy
+     * @param outIdx    receives the suggested guesses, best first
+     * @param outScore  receives their entropies (bits)
+     * @return the number of suggestions copied, or -1 if the position is not in the book
+     */
+    public int lookup(long stateHash, int max, int[] outIdx, double[] outScore) {
+        int lo = 0, hi = entries - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int pos = HEADER + mid * entrySize;
+            int cmp = Long.compareUnsigned(buf.getLong(pos), stateHash);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                int count = 0;
+                for (int i = 0; i < Math.min(k, max); i++) {
+                    int g = buf.getInt(pos + 8 + 4 * i);
+                    if (g < 0) break;
+                    outIdx[count]   = g;
+                    outScore[count] = buf.getFloat(pos + 8 + 4 * k + 4 * i);
+                    count++;
+                }
+                return count;
+            }
+        }
+        return -1;
+    }
+}
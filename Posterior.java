@@ -0,0 +1,231 @@
+// Posterior.java
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Probabilistic alternative to {@link CandidateManager}'s hard filter: a
+ * weight per country, updated by Bayes' rule with every reading.
+ *
+ * A distance reading multiplies each country's weight by a Gaussian
+ * likelihood of its true distance from the guess; a reading that is not a
+ * new closest only penalizes countries that would have read closer. An
+ * “adjacent” reading down-weights every non-neighbor by a fixed factor.
+ * No likelihood is ever zero, so a misread distance lowers the true
+ * target's weight instead of eliminating it, and the game cannot dead-end.
+ *
+ * Weights are kept as float logs, so a multiply is an add: each reading
+ * is one fused pass over a contiguous distance row that C2 can vectorize,
+ * followed by one pass that renormalizes and re-derives the support (the
+ * countries within {@link #SUPPORT_RATIO} of the most likely one), which
+ * sessions treat as the candidate set. Neither pass allocates.
+ */
+public final class Posterior {
+    /** Countries less likely than this fraction of the leader drop out of the support. */
+    public static final float SUPPORT_RATIO = 1e-4f;
+    /** Log-likelihood of a non-neighbor after an “adjacent” reading: as unlikely as a 5σ miss. */
+    private static final float ADJACENT_MISS = -12.5f;
+    private static final float LOG_SUPPORT  = (float) Math.log(SUPPORT_RATIO);
+    private static final double KM_PER_MILE = 1.60934;
+
+    private final int n;
+    private final DistanceMatrix D;
+    private final AdjacencyGraph adj;
+    private final float sigmaKm;
+    /** Natural-log weights, shifted so the largest is 0; -∞ for guessed countries. */
+    private final float[] logWeight;
+    /** exp(logWeight) over the support (the leader is 1), 0 elsewhere. */
+    private final float[] weight;
+    /** Sum of weight. */
+    private double total;
+    /** Support bitset, 64 indices per word. */
+    private final long[] support;
+    /** Scratch distance row (km) of the current guess. */
+    private final float[] row;
+    private double bestMiles;
+
+    /** Pooled snapshots; entries [0..depth) are live, the rest are reusable. */
+    private final List<State> history = new ArrayList<>();
+    private int depth;
+
+    private static class State {
+        final float[] logWeight;
+        double bestMiles;
+
+        State(int n) {
+            this.logWeight = new float[n];
+        }
+    }
+
+    /**
+     * @param D          precomputed DistanceMatrix (km)
+     * @param adj        adjacency graph
+     * @param sigmaMiles standard deviation of a player's distance reading
+     */
+    public Posterior(DistanceMatrix D, AdjacencyGraph adj, double sigmaMiles) {
+        if (!(sigmaMiles > 0)) throw new IllegalArgumentException("sigmaMiles must be positive");
+        this.n         = D.size();
+        this.D         = D;
+        this.adj       = adj;
+        this.sigmaKm   = (float) (sigmaMiles * KM_PER_MILE);
+        this.logWeight = new float[n];
+        this.weight    = new float[n];
+        this.support   = new long[(n + 63) >>> 6];
+        this.row       = new float[n];
+        reset();
+    }
+
+    /** Returns to the uniform prior with no history. */
+    public void reset() {
+        Arrays.fill(logWeight, 0f);
+        bestMiles = Double.MAX_VALUE;
+        depth     = 0;
+        normalize(0f);
+    }
+
+    /** Save current state onto the history stack. */
+    public void snapshot() {
+        State s;
+        if (depth < history.size()) {
+            s = history.get(depth);
+        } else {
+            s = new State(n);
+            history.add(s);
+        }
+        depth++;
+        System.arraycopy(logWeight, 0, s.logWeight, 0, n);
+        s.bestMiles = bestMiles;
+    }
+
+    /** Restore the most recent saved state. */
+    public void restore() {
+        if (depth == 0) {
+            throw new NoSuchElementException("No snapshot to restore");
+        }
+        State prev = history.get(--depth);
+        System.arraycopy(prev.logWeight, 0, logWeight, 0, n);
+        bestMiles = prev.bestMiles;
+        normalize(max());
+    }
+
+    /** Takes over another posterior's current weights (not its history). */
+    public void copyFrom(Posterior other) {
+        if (other.n != n) {
+            throw new IllegalArgumentException("Country count mismatch: " + other.n + " vs " + n);
+        }
+        System.arraycopy(other.logWeight, 0, logWeight, 0, n);
+        System.arraycopy(other.weight, 0, weight, 0, n);
+        System.arraycopy(other.support, 0, support, 0, support.length);
+        total     = other.total;
+        bestMiles = other.bestMiles;
+        depth     = 0;
+    }
+
+    /** Rules out a country for certain, e.g. a guess that was not the target. */
+    public void exclude(int idx) {
+        logWeight[idx] = Float.NEGATIVE_INFINITY;
+        normalize(max());
+    }
+
+    /**
+     * Applies the likelihood of one reading. The guess itself is ruled out,
+     * since the game goes on only if it was wrong.
+     *
+     * @param guessIdx   index of the guessed country
+     * @param isAdjacent true if feedback was “adjacent”; false otherwise
+     * @param distMiles  reported distance in miles (ignored if adjacent)
+     */
+    public void applyFeedback(int guessIdx, boolean isAdjacent, double distMiles) {
+        logWeight[guessIdx] = Float.NEGATIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        if (isAdjacent) {
+            // Penalize everyone, then refund the neighbors
+            for (int j = 0; j < n; j++) max = Math.max(max, logWeight[j] += ADJACENT_MISS);
+            for (int r = 0, deg = adj.degree(guessIdx); r < deg; r++) {
+                int nb = adj.neighbor(guessIdx, r);
+                max = Math.max(max, logWeight[nb] -= ADJACENT_MISS);
+            }
+        } else {
+            D.row(guessIdx, row);
+            float lo, hi;
+            if (distMiles < bestMiles) {
+                // New best: Gaussian around the reading
+                bestMiles = distMiles;
+                lo = hi = (float) (distMiles * KM_PER_MILE);
+            } else {
+                // Not closer: only countries that would have read closer are unlikely
+                lo = (float) (bestMiles * KM_PER_MILE);
+                hi = Float.POSITIVE_INFINITY;
+            }
+            float scale = 1f / (2f * sigmaKm * sigmaKm);
+            // Branch-free so the loop vectorizes: dev is 0 inside [lo, hi]
+            for (int j = 0; j < n; j++) {
+                float d   = row[j];
+                float dev = Math.max(lo - d, 0f) + Math.max(d - hi, 0f);
+                max = Math.max(max, logWeight[j] -= scale * dev * dev);
+            }
+        }
+        normalize(max);
+    }
+
+    private float max() {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int j = 0; j < n; j++) max = Math.max(max, logWeight[j]);
+        return max;
+    }
+
+    /**
+     * Shifts the logs so the largest is 0, then recomputes weight, total and
+     * the support. Shifting keeps float precision from draining away over a
+     * long game.
+     *
+     * @param max the largest log weight
+     */
+    private void normalize(float max) {
+        if (max == Float.NEGATIVE_INFINITY) max = 0f; // every country ruled out; nothing to shift
+        Arrays.fill(support, 0L);
+        double sum = 0.0;
+        for (int j = 0; j < n; j++) {
+            float lw = logWeight[j] -= max;
+            if (lw >= LOG_SUPPORT) {
+                float w = (float) Math.exp(lw);
+                weight[j] = w;
+                sum += w;
+                support[j >>> 6] |= 1L << j;
+            } else {
+                weight[j] = 0f;
+            }
+        }
+        total = sum;
+    }
+
+    /**
+     * @return unnormalized weights of each country being the target: the most
+     *         likely has weight 1, countries outside the support 0 (do not modify)
+     */
+    public float[] weights() {
+        return weight;
+    }
+
+    /** @return the sum of {@link #weights()} */
+    public double totalWeight() {
+        return total;
+    }
+
+    /** @return the support bitset, 64 indices per word (do not modify) */
+    long[] supportWords() {
+        return support;
+    }
+
+    /** @return the best (smallest) distance reading so far, or Double.MAX_VALUE before any */
+    public double bestMiles() {
+        return bestMiles;
+    }
+
+    /** @return the probability that idx is the target */
+    public double probability(int idx) {
+        return total == 0 ? 0.0 : weight[idx] / total;
+    }
+}
@@ -0,0 +1,696 @@
+// SolverEngine.java
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Headless solver: owns the immutable model shared by every game (countries,
+ * distances, adjacency, feedback codes) and hands out per-game Sessions.
+ *
+ * An engine is safe to share across threads; a Session is not.
+ */
+public class SolverEngine {
+    /** {@link Session#submit} result: feedback applied, several candidates remain. */
+    public static final int SUBMIT_OK       = 0;
+    /** {@link Session#submit} result: feedback applied, exactly one candidate remains. */
+    public static final int SUBMIT_SOLVED   = 1;
+    /** {@link Session#submit} result: unknown or already-guessed country; nothing changed. */
+    public static final int SUBMIT_INVALID  = -1;
+    /**
+     * {@link Session#submit} result: the feedback matched no candidate, so the
+     * turn was rolled back and the guess marked impossible.
+     */
+    public static final int SUBMIT_NO_MATCH = -2;
+
+    private final List<Country> countries;
+    private final Map<String, Integer> idxMap;
+    private final DistanceMatrix D;
+    private final AdjacencyGraph adj;
+    private final FeedbackTable table;
+    /** Sorted distance rows; null when the matrix is too large for them (see {@link DistanceIndex#supports}). */
+    private final DistanceIndex index;
+    private final GuessRanker ranker;
+    /** Per-thread scorers for ranking rankAll guesses on the pool. */
+    private final ThreadLocal<BandScorer> bandScorers;
+    private final double toleranceMiles;
+    private final boolean rankAll;
+    private final boolean parallel;
+    private final OpeningBook book;
+    private final boolean incremental;
+    private final TranspositionCache cache;
+    private final Lookahead lookahead;
+    /** Standard deviation (miles) of a reading in posterior mode; 0 for hard filtering. */
+    private final double sigmaMiles;
+
+    /**
+     * Builds the full model for the given countries.
+     *
+     * @param countries      the ordered list of countries
+     * @param adjNeighborK   how many nearest neighbors count as “adjacent”
+     * @param toleranceMiles ±band for accepting new best-distance readings
+     * @param lambdaKm       decay constant (in km) for the redness function
+     */
+    public SolverEngine(List<Country> countries,
+                        int adjNeighborK,
+                        double toleranceMiles,
+                        double lambdaKm) {
+        this(countries, new DistanceMatrix(countries),
+             AdjacencyGraph.build(countries, adjNeighborK), toleranceMiles, lambdaKm);
+    }
+
+    /**
+     * Builds the model around a precomputed (e.g. cached) distance matrix
+     * and adjacency graph. Above {@link DistanceIndex#MAX_SIZE} countries no
+     * DistanceIndex is built: candidates are filtered by scanning and rankAll
+     * is unavailable. For a matrix that does not store its distances, such as
+     * a {@link TiledDistanceMatrix} for city-scale gazetteers, feedback codes
+     * are also encoded on demand rather than tabulated.
+     *
+     * @param countries      the ordered list of countries
+     * @param D              distances between those countries (km)
+     * @param adj            adjacency graph
+     * @param toleranceMiles ±band for accepting new best-distance readings
+     * @param lambdaKm       decay constant (in km) for the redness function
+     */
+    public SolverEngine(List<Country> countries,
+                        DistanceMatrix D,
+                        AdjacencyGraph adj,
+                        double toleranceMiles,
+                        double lambdaKm) {
+        if (D.size() != countries.size() || adj.size() != countries.size()) {
+            throw new IllegalArgumentException("Model size does not match country list");
+        }
+        this.countries      = List.copyOf(countries);
+        this.idxMap         = nameMap(countries);
+        this.D              = D;
+        this.adj            = adj;
+        this.table          = FeedbackTable.build(D, adj, lambdaKm);
+        this.index          = DistanceIndex.supports(D) ? DistanceIndex.build(D) : null;
+        this.ranker         = new GuessRanker(table);
+        this.bandScorers    = ThreadLocal.withInitial(() -> new BandScorer(index, D, adj, toleranceMiles));
+        this.toleranceMiles = toleranceMiles;
+        this.rankAll        = false;
+        this.parallel       = true;
+        this.book           = null;
+        this.incremental    = false;
+        this.cache          = null;
+        this.lookahead      = null;
+        this.sigmaMiles     = 0;
+    }
+
+    private SolverEngine(SolverEngine base, boolean rankAll, boolean parallel,
+                         OpeningBook book, boolean incremental, TranspositionCache cache,
+                         Lookahead lookahead, double sigmaMiles) {
+        this.countries      = base.countries;
+        this.idxMap         = base.idxMap;
+        this.D              = base.D;
+        this.adj            = base.adj;
+        this.table          = base.table;
+        this.index          = base.index;
+        this.ranker         = base.ranker;
+        this.bandScorers    = base.bandScorers;
+        this.toleranceMiles = base.toleranceMiles;
+        this.rankAll        = rankAll;
+        this.parallel       = parallel;
+        this.book           = book;
+        this.incremental    = incremental;
+        this.cache          = cache;
+        this.lookahead      = lookahead;
+        this.sigmaMiles     = sigmaMiles;
+    }
+
+    /**
+     * @return an engine sharing this model whose sessions also consider
+     *         non-candidate countries as guesses, scored by the candidate
+     *         sets the filter would leave ({@link BandScorer})
+     */
+    public SolverEngine withRankAll(boolean rankAll) {
+        if (rankAll && index == null) {
+            throw new UnsupportedOperationException("rankAll needs a DistanceIndex, which is only built up to "
+                    + DistanceIndex.MAX_SIZE + " countries");
+        }
+        return new SolverEngine(this, rankAll, parallel, book, incremental, cache, lookahead, sigmaMiles);
+    }
+
+    /**
+     * @return an engine sharing this model whose sessions rank on the common
+     *         ForkJoinPool (true) or on the calling thread without allocating (false)
+     */
+    public SolverEngine withParallelRanking(boolean parallel) {
+        return new SolverEngine(this, rankAll, parallel, book, incremental, cache, lookahead, sigmaMiles);
+    }
+
+    /**
+     * @return an engine sharing this model whose sessions answer positions
+     *         found in the given book without ranking (null to disable)
+     */
+    public SolverEngine withOpeningBook(OpeningBook book) {
+        return new SolverEngine(this, rankAll, parallel, book, incremental, cache, lookahead, sigmaMiles);
+    }
+
+    /**
+     * @return an engine sharing this model whose sessions keep per-guess
+     *         feedback histograms up to date across turns ({@link IncrementalScorer})
+     *         instead of rescoring every candidate; costs n × 102 ints per session
+     */
+    public SolverEngine withIncrementalScoring(boolean incremental) {
+        return new SolverEngine(this, rankAll, parallel, book, incremental, cache, lookahead, sigmaMiles);
+    }
+
+    /**
+     * @return an engine sharing this model whose sessions reuse rankings of
+     *         positions already ranked by any session sharing the cache (null to disable)
+     */
+    public SolverEngine withTranspositionCache(TranspositionCache cache) {
+        return new SolverEngine(this, rankAll, parallel, book, incremental, cache, lookahead, sigmaMiles);
+    }
+
+    /**
+     * @return an engine sharing this model whose sessions re-order their best
+     *         entropy suggestions by expected remaining guesses (null to disable).
+     *         Rankings then depend on the search budget, so give such engines
+     *         their own TranspositionCache.
+     */
+    public SolverEngine withLookahead(Lookahead lookahead) {
+        return new SolverEngine(this, rankAll, parallel, book, incremental, cache, lookahead, sigmaMiles);
+    }
+
+    /**
+     * @return an engine sharing this model whose sessions keep a Bayesian
+     *         {@link Posterior} instead of hard-filtering candidates: readings
+     *         re-weight countries by a Gaussian of the given standard deviation
+     *         and a game never runs out of candidates (0 for hard filtering).
+     *         Suggestions are ranked by weighted entropy on every turn, so the
+     *         opening book, speculator, transposition cache and lookahead,
+     *         which all assume hard-filtered sets, are bypassed.
+     */
+    public SolverEngine withPosterior(double sigmaMiles) {
+        return new SolverEngine(this, rankAll, parallel, book, incremental, cache, lookahead, sigmaMiles);
+    }
+
+    /** @return a fresh game in which every country is still possible */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /** @return the number of countries in the model */
+    public int size() {
+        return countries.size();
+    }
+
+    /** @return the index of the country with this name (case-insensitive), or -1 */
+    public int indexOf(String name) {
+        return indexOf(idxMap, name);
+    }
+
+    /**
+     * The name lookup {@link #indexOf} uses, for resolving names before an
+     * engine exists (e.g. a border file read while building adjacency).
+     *
+     * @return a resolver from country name (case-insensitive) to index, or -1
+     */
+    public static ToIntFunction<String> nameResolver(List<Country> countries) {
+        Map<String, Integer> names = nameMap(countries);
+        return name -> indexOf(names, name);
+    }
+
+    private static int indexOf(Map<String, Integer> names, String name) {
+        Integer idx = names.get(name.trim().toLowerCase());
+        return idx == null ? -1 : idx;
+    }
+
+    /**
+     * Lower-cased full names, plus the part before a comma as an alias
+     * (“Korea, Republic of” → “korea”) when no country has that full name
+     * and no other country shares the alias: “korea” and “virgin islands”
+     * are ambiguous, so they resolve to nothing rather than to the first match.
+     */
+    private static Map<String, Integer> nameMap(List<Country> countries) {
+        Map<String, Integer> names = new HashMap<>();
+        for (int i = 0; i < countries.size(); i++) {
+            names.put(countries.get(i).getName().toLowerCase(), i);
+        }
+        Map<String, Integer> aliases = new HashMap<>();
+        Map<String, Integer> sharing = new HashMap<>();
+        for (int i = 0; i < countries.size(); i++) {
+            String name = countries.get(i).getName();
+            int comma = name.indexOf(',');
+            if (comma <= 0) continue;
+            String alias = name.substring(0, comma).trim().toLowerCase();
+            aliases.put(alias, i);
+            sharing.merge(alias, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> e : aliases.entrySet()) {
+            if (sharing.get(e.getKey()) == 1) names.putIfAbsent(e.getKey(), e.getValue());
+        }
+        return names;
+    }
+
+    /** @return the name of the country at idx */
+    public String name(int idx) {
+        return countries.get(idx).getName();
+    }
+
+    public List<Country> getCountries() {
+        return countries;
+    }
+
+    public DistanceMatrix getDistanceMatrix() {
+        return D;
+    }
+
+    public AdjacencyGraph getAdjacency() {
+        return adj;
+    }
+
+    public FeedbackTable getFeedbackTable() {
+        return table;
+    }
+
+    /**
+     * State of one game. All buffers are sized once at creation, so suggest,
+     * submit and undo do not allocate on the serial ranking path.
+     */
+    public final class Session {
+        private final CandidateManager mgr;
+        private final int[] candBuf;
+        private final int[] guessBuf;
+        private GuessRanker.Scratch scratch;
+        private final IncrementalScorer scorer;
+        /** Non-null in rankAll mode: scores guesses by the sets the filter would leave. */
+        private final Bands bands;
+        /** Non-null in posterior mode; mgr's candidates then mirror its support. */
+        private final Posterior posterior;
+        private final double[] weightedHist;
+        private int[] topIdx;
+        private double[] topScore;
+        private int topCount;
+        private Speculator speculator;
+        /** Background work for a Speculator: unrecorded, and abandoned on interrupt. */
+        private boolean speculative;
+
+        private Session() {
+            int n         = countries.size();
+            this.mgr          = new CandidateManager(n, D, adj, index, toleranceMiles);
+            this.candBuf      = new int[n];
+            this.guessBuf     = new int[n];
+            this.scorer       = incremental ? new IncrementalScorer(table) : null;
+            this.bands        = rankAll ? new Bands() : null;
+            this.posterior    = sigmaMiles > 0 ? new Posterior(D, adj, sigmaMiles) : null;
+            this.weightedHist = posterior != null ? new double[FeedbackTable.CODE_COUNT] : null;
+            ensureCapacity(5);
+        }
+
+        private void ensureCapacity(int k) {
+            if (topIdx != null && topIdx.length >= k) return;
+            topIdx   = new int[k];
+            topScore = new double[k];
+        }
+
+        /**
+         * Ranks the possible next guesses by expected information.
+         * Read the results with {@link #suggestion} and {@link #suggestionScore}.
+         *
+         * @param k maximum number of suggestions
+         * @return the number of suggestions available, at most k
+         */
+        public int suggest(int k) {
+            Metrics.RankEvent event = !speculative && Metrics.RANK_EVENT.isEnabled()
+                    ? new Metrics.RankEvent() : null;
+            if (event != null) event.begin();
+            boolean timed = !speculative && Metrics.enabled();
+            long start = timed ? System.nanoTime() : 0L;
+            topCount = rankTop(k);
+            if (timed) Metrics.RANK_NANOS.record(System.nanoTime() - start);
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.candidates  = mgr.candidateCount();
+                    event.k           = k;
+                    event.suggestions = topCount;
+                    event.commit();
+                }
+            }
+            return topCount;
+        }
+
+        /**
+         * Answers from the book, the speculator or the transposition cache,
+         * else ranks; returns the number of results in topIdx/topScore.
+         */
+        private int rankTop(int k) {
+            ensureCapacity(k);
+            if (posterior != null) return rankPosterior(k);
+            long hash = stateHash();
+            if (book != null && k <= book.k()) {
+                int found = book.lookup(hash, k, topIdx, topScore);
+                if (found >= 0) {
+                    // take() is skipped, so stop the branches it would have cancelled
+                    if (speculator != null) speculator.cancelAll();
+                    return found;
+                }
+            }
+            if (speculator != null) {
+                int found = speculator.take(hash, k, topIdx, topScore);
+                if (found >= 0) return found;
+            }
+            if (cache == null) return rank(k);
+            int found = cache.lookup(hash, mgr.candidateWords(), mgr.guessedWords(),
+                    rankAll, mgr.bestDistanceMiles(), k, topIdx, topScore);
+            if (found >= 0) return found;
+            int count = rank(k);
+            cache.store(hash, mgr.candidateWords(), mgr.guessedWords(),
+                    rankAll, mgr.bestDistanceMiles(), k, count, topIdx, topScore);
+            return count;
+        }
+
+        private int rank(int k) {
+            if (lookahead == null) return rankByEntropy(k);
+            int width = Math.max(k, lookahead.width());
+            ensureCapacity(width);
+            int count = rankByEntropy(width);
+            lookahead.reorder(candBuf, mgr.candidateCount(), topIdx, topScore, count);
+            return Math.min(k, count);
+        }
+
+        /**
+         * Fills topIdx/topScore with the best k guesses by one-ply entropy,
+         * on the first of these paths that applies:
+         * <ol>
+         *   <li>rankAll: every guess scored by {@link BandScorer}, since
+         *       feedback codes misjudge what the filter leaves after a guess
+         *       from outside the candidate set. Band sets overlap, so there
+         *       is no histogram to keep up to date and the incremental path
+         *       does not apply; the branch-and-bound
+         *       {@link GuessRanker#rankPruned} runs on the pool when parallel;</li>
+         *   <li>incremental: candidates scored from the histograms of
+         *       {@link IncrementalScorer}, updated by this turn's changes only;</li>
+         *   <li>parallel: candidates rescored on the fork/join
+         *       {@link GuessRanker#rank};</li>
+         *   <li>otherwise rescored on the calling thread by
+         *       {@link GuessRanker#rankSerial}.</li>
+         * </ol>
+         * All candidate paths produce identical scores.
+         */
+        private int rankByEntropy(int k) {
+            int candCount  = mgr.copyCandidates(candBuf);
+            // With two or fewer left, guessing a candidate is never worse
+            if (rankAll && candCount > 2) return rankByBands(k, candCount, null, mgr.bestDistanceMiles());
+            int guessCount = 0;
+            for (int i = 0; i < candCount; i++) {
+                if (!mgr.isGuessed(candBuf[i])) guessBuf[guessCount++] = candBuf[i];
+            }
+
+            if (scorer != null) {
+                ensureScratch(k);
+                scorer.sync(mgr.candidateWords(), candCount);
+                scorer.rank(guessBuf, guessCount, scratch.top);
+                return scratch.top.drainSorted(topIdx, topScore);
+            } else if (parallel) {
+                return ranker.rank(guessBuf, guessCount, candBuf, candCount, k, topIdx, topScore);
+            } else {
+                ensureScratch(k);
+                ranker.rankSerial(guessBuf, guessCount, candBuf, candCount, scratch);
+                return scratch.top.drainSorted(topIdx, topScore);
+            }
+        }
+
+        /**
+         * Fills topIdx/topScore with the best k guesses by {@link BandScorer}.
+         * Candidates are always ranked; a non-candidate only if it is
+         * expected to tell us more than every candidate. Guesses whose
+         * {@link BandScorer#bound} rules them out are never scored.
+         *
+         * @param candCount number of candidates in candBuf
+         * @param weights   per-country target weights, or null for uniform
+         * @param best      the best distance reading so far
+         */
+        private int rankByBands(int k, int candCount, float[] weights, double best) {
+            int n = countries.size();
+            ensureScratch(k);
+            bands.position(candCount, weights, best);
+            int guessCount = 0;
+            for (int i = 0; i < candCount; i++) {
+                if (!mgr.isGuessed(candBuf[i])) guessBuf[guessCount++] = candBuf[i];
+            }
+            int candGuesses = guessCount;
+            for (int g = 0; g < n; g++) {
+                if (!mgr.isGuessed(g) && !mgr.isCandidate(g)) guessBuf[guessCount++] = g;
+            }
+            GuessRanker.TopK top = scratch.top;
+            rankBandRange(0, candGuesses, Double.NEGATIVE_INFINITY, top);
+            // A guess that cannot win must tell us something, and more than any guess that can
+            rankBandRange(candGuesses, guessCount, Math.max(0.0, top.best()), top);
+            return top.drainSorted(topIdx, topScore);
+        }
+
+        private void rankBandRange(int from, int to, double bar, GuessRanker.TopK top) {
+            if (parallel) {
+                ranker.rankPruned(guessBuf, from, to, bands, bar, countries.size(), top);
+            } else {
+                ranker.rankPrunedSerial(guessBuf, from, to, bands, bar, scratch);
+            }
+        }
+
+        /** Fills topIdx/topScore with the best k guesses by entropy over the posterior weights. */
+        private int rankPosterior(int k) {
+            int candCount = mgr.copyCandidates(candBuf);
+            float[] weights = posterior.weights();
+            if (rankAll && candCount > 2) return rankByBands(k, candCount, weights, posterior.bestMiles());
+            ensureScratch(k);
+            GuessRanker.TopK top = scratch.top;
+            for (int i = 0; i < candCount; i++) {
+                int g = candBuf[i];
+                if (mgr.isGuessed(g)) continue;
+                top.offer(g, EntropyCalculator.score(g, candBuf, candCount, weights, table, weightedHist));
+            }
+            return top.drainSorted(topIdx, topScore);
+        }
+
+        private void ensureScratch(int k) {
+            if (scratch == null || scratch.top.capacity() != k) {
+                scratch = new GuessRanker.Scratch(k, speculative);
+            }
+        }
+
+        /** @return the i-th best guess from the last {@link #suggest} call */
+        public int suggestion(int i) {
+            if (i >= topCount) throw new IndexOutOfBoundsException(i);
+            return topIdx[i];
+        }
+
+        /** @return the entropy (bits) of the i-th best guess from the last {@link #suggest} call */
+        public double suggestionScore(int i) {
+            if (i >= topCount) throw new IndexOutOfBoundsException(i);
+            return topScore[i];
+        }
+
+        /**
+         * Applies the feedback for a guess. A snapshot is taken first so the
+         * turn can be reverted with {@link #undo()}.
+         *
+         * @param guess    index of the guessed country
+         * @param adjacent true if the game reported the target as adjacent
+         * @param miles    reported distance in miles (ignored if adjacent)
+         * @return one of the SUBMIT_* codes; never {@link #SUBMIT_NO_MATCH} in posterior mode
+         * @throws IllegalArgumentException if miles is needed and is negative or not finite
+         */
+        public int submit(int guess, boolean adjacent, double miles) {
+            if (!adjacent && !(Double.isFinite(miles) && miles >= 0)) {
+                throw new IllegalArgumentException("Distance must be finite and non-negative: " + miles);
+            }
+            if (guess < 0 || guess >= countries.size() || mgr.isGuessed(guess)) {
+                return SUBMIT_INVALID;
+            }
+            mgr.snapshot();
+            if (posterior != null) {
+                posterior.snapshot();
+                posterior.applyFeedback(guess, adjacent, miles);
+                mgr.markImpossible(guess);
+                mgr.assignCandidates(posterior.supportWords());
+                return mgr.isSolved() ? SUBMIT_SOLVED : SUBMIT_OK;
+            }
+            if (!mgr.applyFeedback(guess, adjacent, miles)) {
+                if (!speculative && Metrics.enabled()) Metrics.NO_MATCH_FALLBACKS.increment();
+                mgr.restore();
+                mgr.markImpossible(guess);
+                return SUBMIT_NO_MATCH;
+            }
+            return mgr.isSolved() ? SUBMIT_SOLVED : SUBMIT_OK;
+        }
+
+        /** Excludes a guess without feedback, e.g. after unreadable input. */
+        public void reject(int guess) {
+            if (!speculative && Metrics.enabled()) Metrics.REJECTED_GUESSES.increment();
+            mgr.markImpossible(guess);
+            if (posterior != null) {
+                posterior.exclude(guess);
+                mgr.assignCandidates(posterior.supportWords());
+            }
+        }
+
+        /**
+         * Reverts the most recent successful {@link #submit}.
+         *
+         * @return false if there was nothing to undo
+         */
+        public boolean undo() {
+            if (!mgr.canRestore()) return false;
+            mgr.restore();
+            if (posterior != null) posterior.restore();
+            return true;
+        }
+
+        /** Starts a new game on the same model, keeping all buffers. */
+        public void reset() {
+            mgr.reset();
+            if (posterior != null) posterior.reset();
+            topCount = 0;
+        }
+
+        /**
+         * Lets {@link #suggest} answer from suggestions precomputed in the
+         * background (null to disable). Call {@link Speculator#speculate}
+         * after each suggest to start the next turn's work.
+         */
+        public void setSpeculator(Speculator speculator) {
+            this.speculator = speculator;
+        }
+
+        /**
+         * This session's position as seen by {@link BandScorer}. Pool threads
+         * score with their own scorer; the serial path uses the session's.
+         */
+        private final class Bands implements GuessRanker.BoundedScorer {
+            private final BandScorer own = parallel ? null : new BandScorer(index, D, adj, toleranceMiles);
+            private int candCount;
+            private float[] weights;
+            private double best;
+
+            void position(int candCount, float[] weights, double best) {
+                this.candCount = candCount;
+                this.weights   = weights;
+                this.best      = best;
+            }
+
+            private BandScorer scorer() {
+                return parallel ? bandScorers.get() : own;
+            }
+
+            @Override
+            public double bound(int g) {
+                return scorer().bound(g, mgr, candBuf, candCount, weights, best);
+            }
+
+            @Override
+            public double score(int g) {
+                return scorer().score(g, mgr, weights, best);
+            }
+        }
+
+        /**
+         * Marks this session as background work for a {@link Speculator}: it
+         * records no latency or feedback metrics and no JFR events, and its
+         * serial ranking throws CancellationException once its thread is
+         * interrupted. Work counters such as score.calls still count it.
+         */
+        void markSpeculative() {
+            speculative = true;
+            scratch = null;
+            mgr.setRecording(false);
+        }
+
+        /** Takes over another session's position (not its undo history). */
+        void copyFrom(Session other) {
+            mgr.copyFrom(other.mgr);
+            if (posterior != null) posterior.copyFrom(other.posterior);
+            topCount = 0;
+        }
+
+        /**
+         * Finds the candidates whose true distance from guess best matches a
+         * reported reading, for explaining a {@link #SUBMIT_NO_MATCH}.
+         *
+         * @param guess index of the guessed country
+         * @param miles the reading the player entered
+         * @param out   receives up to out.length candidate indices, closest first
+         * @return the number of indices written
+         */
+        public int closestByError(int guess, double miles, int[] out) {
+            if (out.length == 0) return 0;
+            if (index == null) return closestByScan(guess, miles, out);
+            // Two pointers out from the reported distance along guess's sorted row;
+            // error grows monotonically in both directions, so the merge is in order.
+            int n = countries.size();
+            int right = index.lowerBound(guess, miles * 1.60934);
+            int left  = right - 1;
+            int found = 0;
+            while (found < out.length && (left >= 0 || right < n)) {
+                boolean takeLeft = right >= n
+                        || (left >= 0 && errorAt(guess, left, miles) <= errorAt(guess, right, miles));
+                int c = index.at(guess, takeLeft ? left-- : right++);
+                if (mgr.isCandidate(c)) out[found++] = c;
+            }
+            return found;
+        }
+
+        /** {@link #closestByError} without a DistanceIndex: insertion into out over every candidate. */
+        private int closestByScan(int guess, double miles, int[] out) {
+            double[] err = new double[out.length];
+            int found = 0;
+            int candCount = mgr.copyCandidates(candBuf);
+            for (int i = 0; i < candCount; i++) {
+                int c = candBuf[i];
+                double e = Math.abs(D.get(guess, c) / 1.60934 - miles);
+                if (found == out.length && e >= err[found - 1]) continue;
+                int j = found < out.length ? found++ : found - 1;
+                for (; j > 0 && err[j - 1] > e; j--) {
+                    err[j] = err[j - 1];
+                    out[j] = out[j - 1];
+                }
+                err[j] = e;
+                out[j] = c;
+            }
+            return found;
+        }
+
+        private double errorAt(int guess, int rank, double miles) {
+            return Math.abs(index.distanceAt(guess, rank) / 1.60934 - miles);
+        }
+
+        public boolean isSolved() {
+            return mgr.isSolved();
+        }
+
+        /**
+         * @return {@link CandidateManager#stateHash()} of the current position;
+         *         in rankAll mode the best reading so far is folded in, since
+         *         {@link BandScorer} rankings depend on it
+         */
+        public long stateHash() {
+            long hash = mgr.stateHash();
+            if (!rankAll) return hash;
+            long best = Double.doubleToLongBits(mgr.bestDistanceMiles()) * 0x9E3779B97F4A7C15L;
+            return hash ^ best ^ (best >>> 32);
+        }
+
+        /** @return the solved country index; call only if isSolved() is true */
+        public int solution() {
+            return mgr.getSolution();
+        }
+
+        public int candidateCount() {
+            return mgr.candidateCount();
+        }
+
+        public boolean isGuessed(int idx) {
+            return mgr.isGuessed(idx);
+        }
+
+        CandidateManager manager() {
+            return mgr;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+// SpatialIndex.java
+
+import java.util.List;
+
+/**
+ * Static 3-d tree over country centroids projected onto the unit sphere.
+ *
+ * Straight-line (chord) distance between unit vectors grows monotonically
+ * with great-circle distance, so nearest-neighbor and radius queries in 3-d
+ * give the same answers as on the sphere, without any trigonometry per node.
+ * Queries are O(log n) on average; the tree is immutable and thread-safe.
+ */
+public class SpatialIndex {
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final int n;
+    private final double[] x, y, z;
+    /** Point indices in tree order: the node of a range [lo, hi) is at (lo + hi) / 2. */
+    private final int[] tree;
+    /** Split axis (0 = x, 1 = y, 2 = z) of the node stored at the same slot of tree. */
+    private final byte[] axis;
+
+    /**
+     * Builds the index in O(n log n).
+     *
+     * @param countries the ordered list of countries; query results are indices into it
+     */
+    public SpatialIndex(List<Country> countries) {
+        double[][] unit = DistanceMatrix.unitVectors(
+                DistanceMatrix.latitudes(countries), DistanceMatrix.longitudes(countries));
+        this.n    = countries.size();
+        this.x    = unit[0];
+        this.y    = unit[1];
+        this.z    = unit[2];
+        this.tree = new int[n];
+        this.axis = new byte[n];
+        for (int i = 0; i < n; i++) tree[i] = i;
+        build(0, n);
+    }
+
+    /** @return the number of indexed points */
+    public int size() {
+        return n;
+    }
+
+    private void build(int lo, int hi) {
+        if (hi - lo <= 1) return;
+        // Split on the axis with the widest spread
+        double[] min = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+        double[] max = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+        for (int i = lo; i < hi; i++) {
+            int p = tree[i];
+            for (int a = 0; a < 3; a++) {
+                double v = coord(p, a);
+                if (v < min[a]) min[a] = v;
+                if (v > max[a]) max[a] = v;
+            }
+        }
+        int a = 0;
+        for (int d = 1; d < 3; d++) {
+            if (max[d] - min[d] > max[a] - min[a]) a = d;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, a);
+        axis[mid] = (byte) a;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /** Quickselect: places the k-th smallest of tree[lo..hi] along axis a at slot k. */
+    private void select(int lo, int hi, int k, int a) {
+        while (hi > lo) {
+            double pivot = coord(tree[(lo + hi) >>> 1], a);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (coord(tree[i], a) < pivot) i++;
+                while (coord(tree[j], a) > pivot) j--;
+                if (i <= j) {
+                    int t = tree[i]; tree[i] = tree[j]; tree[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private double coord(int p, int a) {
+        return a == 0 ? x[p] : a == 1 ? y[p] : z[p];
+    }
+
+    private double chord2(int p, double qx, double qy, double qz) {
+        double dx = x[p] - qx, dy = y[p] - qy, dz = z[p] - qz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Finds the k nearest other points to point q.
+     *
+     * @param q      index of the query point (excluded from the result)
+     * @param k      number of neighbors wanted
+     * @param out    receives neighbor indices, nearest first (length ≥ k)
+     * @param dist2  scratch of length ≥ k (squared chord lengths)
+     * @return the number of neighbors written, min(k, n - 1)
+     */
+    public int nearest(int q, int k, int[] out, double[] dist2) {
+        if (k <= 0) return 0;
+        Heap heap = new Heap(out, dist2, k);
+        nearest(0, n, q, x[q], y[q], z[q], heap);
+        return heap.drainSorted();
+    }
+
+    private void nearest(int lo, int hi, int q, double qx, double qy, double qz, Heap heap) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        int p = tree[mid];
+        if (p != q) heap.offer(p, chord2(p, qx, qy, qz));
+        if (hi - lo == 1) return;
+
+        int a = axis[mid];
+        double diff = (a == 0 ? qx : a == 1 ? qy : qz) - coord(p, a);
+        if (diff < 0) {
+            nearest(lo, mid, q, qx, qy, qz, heap);
+            if (diff * diff < heap.bound()) nearest(mid + 1, hi, q, qx, qy, qz, heap);
+        } else {
+            nearest(mid + 1, hi, q, qx, qy, qz, heap);
+            if (diff * diff < heap.bound()) nearest(lo, mid, q, qx, qy, qz, heap);
+        }
+    }
+
+    /**
+     * Finds every point within a great-circle radius of point q (q excluded).
+     *
+     * @param q        index of the query point
+     * @param radiusKm search radius in kilometers
+     * @param out      receives matching indices in no particular order
+     * @return the total number of matches; only the first out.length are written
+     */
+    public int within(int q, double radiusKm, int[] out) {
+        double theta = Math.min(Math.PI, radiusKm / EARTH_RADIUS_KM);
+        double chord = 2 * Math.sin(theta / 2);
+        return within(0, n, q, x[q], y[q], z[q], chord * chord, out, 0);
+    }
+
+    private int within(int lo, int hi, int q, double qx, double qy, double qz,
+                       double r2, int[] out, int count) {
+        if (lo >= hi) return count;
+        int mid = (lo + hi) >>> 1;
+        int p = tree[mid];
+        if (p != q && chord2(p, qx, qy, qz) <= r2) {
+            if (count < out.length) out[count] = p;
+            count++;
+        }
+        int a = axis[mid];
+        double diff = (a == 0 ? qx : a == 1 ? qy : qz) - coord(p, a);
+        if (diff <= 0 || diff * diff <= r2) count = within(lo, mid, q, qx, qy, qz, r2, out, count);
+        if (diff >= 0 || diff * diff <= r2) count = within(mid + 1, hi, q, qx, qy, qz, r2, out, count);
+        return count;
+    }
+
+    /** Bounded max-heap over caller-owned arrays; the root is the farthest kept point. */
+    private static final class Heap {
+        private final int[] idx;
+        private final double[] d2;
+        private final int k;
+        private int size;
+
+        Heap(int[] idx, double[] d2, int k) {
+            this.idx = idx;
+            this.d2  = d2;
+            this.k   = k;
+        }
+
+        double bound() {
+            return size < k ? Double.POSITIVE_INFINITY : d2[0];
+        }
+
+        void offer(int p, double d) {
+            if (size < k) {
+                int i = size++;
+                idx[i] = p;
+                d2[i] = d;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (!farther(i, parent)) break;
+                    swap(i, parent);
+                    i = parent;
+                }
+            } else if (d < d2[0] || (d == d2[0] && p < idx[0])) {
+                idx[0] = p;
+                d2[0] = d;
+                siftDown(0, size);
+            }
+        }
+
+        /** Heap-sorts in place so entries end up nearest first. */
+        int drainSorted() {
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            return size;
+        }
+
+        private boolean farther(int a, int b) {
+            return d2[a] > d2[b] || (d2[a] == d2[b] && idx[a] > idx[b]);
+        }
+
+        private void siftDown(int i, int end) {
+            while (true) {
+                int l = 2 * i + 1;
+                if (l >= end) return;
+                int m = l;
+                if (l + 1 < end && farther(l + 1, l)) m = l + 1;
+                if (!farther(m, i)) return;
+                swap(i, m);
+                i = m;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int ti = idx[a]; idx[a] = idx[b]; idx[b] = ti;
+            double td = d2[a]; d2[a] = d2[b]; d2[b] = td;
+        }
+    }
+}
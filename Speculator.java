@@ -0,0 +1,195 @@
+// Speculator.java
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Precomputes the next turn's suggestions while the player is still typing.
+ *
+ * After a turn's suggestions are shown, {@link #speculate} branches on the
+ * top few of them: for each, it plays out every reading a candidate target
+ * could produce (adjacent, or its true distance), which collapses into a
+ * handful of distinct surviving candidate sets, the distance bands the
+ * tolerance filter can tell apart. Each distinct resulting position is
+ * ranked on its own virtual thread and parked, keyed by
+ * {@link CandidateManager#stateHash()}.
+ *
+ * When the real feedback arrives, {@link SolverEngine.Session#suggest}
+ * calls {@link #take} with the new position's hash: a finished branch is
+ * returned at once, a running one is waited for, and every other branch is
+ * cancelled. Branch sessions check for the interrupt between guesses and
+ * give up, and record no metrics or JFR events of their own. Results are
+ * identical to ranking the position directly.
+ *
+ * speculate and take must be called from the game's own thread.
+ */
+public class Speculator implements AutoCloseable {
+    private final SolverEngine engine;
+    private final int branchGuesses;
+    private final int k;
+    private final int maxPositions;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Positions being ranked (or ranked) for the current turn. Each turn gets
+     * a fresh map, so a planner still winding down cannot leak into the next.
+     */
+    private Map<Long, Future<Ranked>> positions = new ConcurrentHashMap<>();
+    private Future<?> planner;
+
+    private static final class Ranked {
+        final int[] idx;
+        final double[] score;
+        final int count;
+
+        Ranked(int[] idx, double[] score, int count) {
+            this.idx   = idx;
+            this.score = score;
+            this.count = count;
+        }
+    }
+
+    /**
+     * @param engine        the live game's engine; branches rank serially on their own sessions
+     * @param branchGuesses how many of the top suggestions to branch on
+     * @param k             suggestions to precompute per position
+     * @param maxPositions  cap on positions ranked per turn
+     */
+    public Speculator(SolverEngine engine, int branchGuesses, int k, int maxPositions) {
+        this.engine        = engine.withParallelRanking(false).withIncrementalScoring(false);
+        this.branchGuesses = branchGuesses;
+        this.k             = k;
+        this.maxPositions  = maxPositions;
+    }
+
+    /**
+     * Starts precomputing the positions reachable from live by guessing one
+     * of its current suggestions. Drops any work left from the previous turn.
+     *
+     * @param live  the game being played; its last {@link SolverEngine.Session#suggest}
+     *              result picks the guesses to branch on
+     * @param shown number of suggestions live currently holds
+     */
+    public void speculate(SolverEngine.Session live, int shown) {
+        cancelAll();
+        if (live.isSolved()) return;
+
+        // Copy on this thread: live is not thread-safe and will change once the player answers
+        SolverEngine.Session base = newBranch();
+        base.copyFrom(live);
+        int[] guesses = new int[Math.min(branchGuesses, shown)];
+        for (int i = 0; i < guesses.length; i++) guesses[i] = live.suggestion(i);
+        int[] targets = new int[engine.size()];
+        int targetCount = base.manager().copyCandidates(targets);
+
+        Map<Long, Future<Ranked>> turn = positions;
+        planner = workers.submit(() -> plan(base, guesses, targets, targetCount, turn));
+    }
+
+    private SolverEngine.Session newBranch() {
+        SolverEngine.Session session = engine.newSession();
+        session.markSpeculative();
+        return session;
+    }
+
+    /**
+     * Enumerates distinct branch positions and hands each to its own ranking
+     * task. Most (guess, target) pairs land on a position already seen, so
+     * feedback is played out on one reused scratch session and only a new
+     * position is copied into a session of its own.
+     */
+    private void plan(SolverEngine.Session base, int[] guesses, int[] targets, int targetCount,
+                      Map<Long, Future<Ranked>> turn) {
+        Thread self = Thread.currentThread();
+        SolverEngine.Session scratch = newBranch();
+        for (int g : guesses) {
+            for (int i = 0; i < targetCount; i++) {
+                if (self.isInterrupted() || turn.size() >= maxPositions) return;
+                int t = targets[i];
+                if (t == g) continue;
+                boolean adjacent = GameSimulator.isAdjacent(engine, g, t);
+                double miles = adjacent ? 0 : GameSimulator.trueMiles(engine, g, t);
+
+                scratch.copyFrom(base);
+                // Solved or dead-end positions need no ranking
+                if (scratch.submit(g, adjacent, miles) != SolverEngine.SUBMIT_OK) continue;
+                Future<Ranked> f = turn.computeIfAbsent(scratch.stateHash(), h -> {
+                    SolverEngine.Session branch = newBranch();
+                    branch.copyFrom(scratch);
+                    return workers.submit(() -> rank(branch));
+                });
+                // cancelAll interrupts us before cancelling the map's entries, so
+                // anything it may have missed is caught here
+                if (self.isInterrupted()) {
+                    f.cancel(true);
+                    return;
+                }
+            }
+        }
+    }
+
+    private Ranked rank(SolverEngine.Session branch) {
+        int count = branch.suggest(k);
+        int[] idx = new int[count];
+        double[] score = new double[count];
+        for (int i = 0; i < count; i++) {
+            idx[i]   = branch.suggestion(i);
+            score[i] = branch.suggestionScore(i);
+        }
+        return new Ranked(idx, score, count);
+    }
+
+    /**
+     * Claims the precomputed suggestions for a position and cancels all other
+     * speculative work.
+     *
+     * @param stateHash {@link CandidateManager#stateHash()} of the position
+     * @param k         suggestions wanted
+     * @param outIdx    receives the ranked guess indices
+     * @param outScore  receives the matching entropies in bits
+     * @return the number of suggestions written, or -1 if the position was not precomputed
+     */
+    public int take(long stateHash, int k, int[] outIdx, double[] outScore) {
+        Future<Ranked> hit = k <= this.k ? positions.remove(stateHash) : null;
+        cancelAll();
+        if (hit == null) {
+            if (Metrics.enabled()) Metrics.SPECULATION_MISSES.increment();
+            return -1;
+        }
+        Ranked r;
+        try {
+            r = hit.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (ExecutionException | CancellationException e) {
+            return -1;
+        }
+        if (Metrics.enabled()) Metrics.SPECULATION_HITS.increment();
+        int count = Math.min(k, r.count);
+        System.arraycopy(r.idx, 0, outIdx, 0, count);
+        System.arraycopy(r.score, 0, outScore, 0, count);
+        return count;
+    }
+
+    /** Cancels every speculative task; the next {@link #speculate} starts afresh. */
+    void cancelAll() {
+        if (planner != null) {
+            planner.cancel(true);
+            planner = null;
+        }
+        for (Future<Ranked> f : positions.values()) f.cancel(true);
+        positions = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        workers.shutdownNow();
+    }
+}
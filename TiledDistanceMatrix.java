@@ -0,0 +1,238 @@
+// TiledDistanceMatrix.java
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * DistanceMatrix for gazetteers too large to hold n×n distances.
+ *
+ * Distances are computed on demand, a tile of consecutive full rows at a
+ * time, into a fixed pool of off-heap slots. Callers that scan rows —
+ * FeedbackEncoding, EntropyCalculator and CandidateManager all read
+ * D.get(guess, *) — touch one tile per row scan, and {@link #row} copies a
+ * whole row out of its tile in one go. Only the unit vectors (24 bytes per
+ * point) live on the heap.
+ *
+ * Values are identical to the dense DistanceMatrix built from the same
+ * coordinates. get() and row() are thread-safe. Reads of a resident tile
+ * take no lock: each slot has a StampedLock, readers validate an optimistic
+ * stamp, and only a miss (or a read that raced an eviction) takes the lock
+ * that guards loading. Eviction is CLOCK (second chance), since readers
+ * cannot reorder an LRU list without a lock.
+ */
+public class TiledDistanceMatrix extends DistanceMatrix {
+    private final double[] x, y, z;
+    private final int tileRows;
+    private final int tiles;
+
+    /** Off-heap storage: slot s holds tileRows × n floats starting at s * tileRows * n. */
+    private final FloatBuffer store;
+    private final int slots;
+    /** tileSlot[t] = slot holding tile t, or -1; written under loadLock, read racily and validated. */
+    private final int[] tileSlot;
+    /** slotTile[s] = tile held by slot s, or -1; written under slot s's write lock. */
+    private final int[] slotTile;
+    /** Write-locked while a slot is refilled, so optimistic readers of the old tile retry. */
+    private final StampedLock[] slotLocks;
+    /** CLOCK reference bits; set by readers, cleared by the eviction hand. */
+    private final boolean[] referenced;
+    private int hand, used;
+
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param countries  the ordered list of countries
+     * @param tileRows   rows per tile
+     * @param cacheBytes off-heap budget for cached tiles (at least one tile is always kept)
+     */
+    public TiledDistanceMatrix(List<Country> countries, int tileRows, long cacheBytes) {
+        this(DistanceMatrix.latitudes(countries), DistanceMatrix.longitudes(countries), tileRows, cacheBytes);
+    }
+
+    /**
+     * @param latDeg     latitudes in degrees
+     * @param lonDeg     longitudes in degrees, same length as latDeg
+     * @param tileRows   rows per tile
+     * @param cacheBytes off-heap budget for cached tiles (at least one tile is always kept)
+     */
+    public TiledDistanceMatrix(double[] latDeg, double[] lonDeg, int tileRows, long cacheBytes) {
+        super(latDeg.length);
+        if (tileRows <= 0) throw new IllegalArgumentException("tileRows must be positive");
+        int n = latDeg.length;
+        double[][] unit = DistanceMatrix.unitVectors(latDeg, lonDeg);
+        this.x        = unit[0];
+        this.y        = unit[1];
+        this.z        = unit[2];
+        this.tileRows = tileRows;
+        this.tiles    = (n + tileRows - 1) / tileRows;
+
+        long tileBytes = 4L * tileRows * Math.max(1, n);
+        if (tileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A tile of " + tileRows + " rows exceeds 2 GB; use fewer rows");
+        }
+        long maxSlots  = Math.min((long) Integer.MAX_VALUE / 4 / tileRows / Math.max(1, n), tiles);
+        this.slots     = (int) Math.max(1, Math.min(cacheBytes / tileBytes, maxSlots));
+        this.store     = ByteBuffer.allocateDirect((int) (tileBytes * slots))
+                                   .order(ByteOrder.nativeOrder())
+                                   .asFloatBuffer();
+        this.tileSlot   = new int[tiles];
+        this.slotTile   = new int[slots];
+        this.slotLocks  = new StampedLock[slots];
+        this.referenced = new boolean[slots];
+        Arrays.fill(tileSlot, -1);
+        Arrays.fill(slotTile, -1);
+        for (int s = 0; s < slots; s++) slotLocks[s] = new StampedLock();
+    }
+
+    @Override
+    public double get(int i, int j) {
+        int n = size();
+        if (i < 0 || i >= n) throw new IndexOutOfBoundsException(i);
+        if (j < 0 || j >= n) throw new IndexOutOfBoundsException(j);
+        if (i == j) return 0.0;
+        int tile = i / tileRows;
+        int offset = (i - tile * tileRows) * n + j;
+        int slot = tileSlot[tile];
+        if (slot >= 0) {
+            StampedLock sl = slotLocks[slot];
+            long stamp = sl.tryOptimisticRead();
+            if (slotTile[slot] == tile) {
+                float d = store.get(slot * tileRows * n + offset);
+                if (sl.validate(stamp)) {
+                    referenced[slot] = true;
+                    hits.increment();
+                    return d;
+                }
+            }
+        }
+        loadLock.lock();
+        try {
+            return store.get(resident(tile) * tileRows * n + offset);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /** Copies row i out of its tile, locating (or computing) the tile once. */
+    @Override
+    public void row(int i, float[] out) {
+        int n = size();
+        if (i < 0 || i >= n) throw new IndexOutOfBoundsException(i);
+        int tile = i / tileRows;
+        int offset = (i - tile * tileRows) * n;
+        int slot = tileSlot[tile];
+        if (slot >= 0) {
+            StampedLock sl = slotLocks[slot];
+            long stamp = sl.tryOptimisticRead();
+            if (slotTile[slot] == tile) {
+                store.get(slot * tileRows * n + offset, out, 0, n);
+                if (sl.validate(stamp)) {
+                    referenced[slot] = true;
+                    hits.increment();
+                    return;
+                }
+            }
+        }
+        loadLock.lock();
+        try {
+            store.get(resident(tile) * tileRows * n + offset, out, 0, n);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * @return the slot holding tile, loading it if needed; caller holds
+     *         loadLock, so the slot stays put until it is released
+     */
+    private int resident(int tile) {
+        int slot = tileSlot[tile];
+        if (slot >= 0) {
+            referenced[slot] = true;
+            hits.increment();
+            return slot;
+        }
+        misses.increment();
+        return load(tile);
+    }
+
+    /** Fills a free or evicted slot with the given tile; caller holds loadLock. */
+    private int load(int tile) {
+        int slot;
+        if (used < slots) {
+            slot = used++;
+        } else {
+            // Second chance: skip slots read since the hand last passed them
+            while (referenced[hand]) {
+                referenced[hand] = false;
+                hand = (hand + 1) % slots;
+            }
+            slot = hand;
+            hand = (hand + 1) % slots;
+            evictions.increment();
+        }
+        StampedLock sl = slotLocks[slot];
+        long stamp = sl.writeLock();
+        try {
+            if (slotTile[slot] >= 0) tileSlot[slotTile[slot]] = -1;
+            int n = size();
+            int first = tile * tileRows;
+            int last  = Math.min(n, first + tileRows);
+            int base  = slot * tileRows * n;
+            for (int r = first; r < last; r++) {
+                double xr = x[r], yr = y[r], zr = z[r];
+                int row = base + (r - first) * n;
+                for (int j = 0; j < n; j++) {
+                    store.put(row + j, j == r ? 0f : DistanceMatrix.chordToKm(x[j] - xr, y[j] - yr, z[j] - zr));
+                }
+            }
+            slotTile[slot] = tile;
+        } finally {
+            sl.unlockWrite(stamp);
+        }
+        tileSlot[tile] = slot;
+        referenced[slot] = true;
+        return slot;
+    }
+
+    /** @return number of reads served from a cached tile */
+    public long tileHits() {
+        return hits.sum();
+    }
+
+    /** @return number of reads that had to compute a tile */
+    public long tileMisses() {
+        return misses.sum();
+    }
+
+    /** @return number of tiles dropped to make room for another */
+    public long tileEvictions() {
+        return evictions.sum();
+    }
+
+    /** @return how many tiles fit in the off-heap budget */
+    public int tileCapacity() {
+        return slots;
+    }
+
+    /** @return hits over all tile reads, or 0 before the first read */
+    public double tileHitRate() {
+        long h = tileHits(), total = h + tileMisses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("distance tiles: capacity=%d of %d hits=%d misses=%d (%.1f%% hit) evictions=%d",
+                tileCapacity(), tiles, tileHits(), tileMisses(), 100 * tileHitRate(), tileEvictions());
+    }
+}
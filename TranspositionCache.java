@@ -0,0 +1,192 @@
+// TranspositionCache.java
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of ranked suggestions by game position, shared by every
+ * session of an engine.
+ *
+ * Different orders of play, undo, and different players all revisit the
+ * same candidate sets; a position is identified by
+ * {@link CandidateManager#stateHash()} and confirmed against a copy of its
+ * candidate and guessed bitsets (and, for rankAll rankings, which depend on
+ * it, the best reading so far), so a hash collision is a miss, never a
+ * wrong answer.
+ *
+ * The cache is split into independently locked segments, each evicting its
+ * least recently used entry when full. Locks rather than synchronized keep
+ * virtual threads (see {@link GameServer}) unpinned.
+ */
+public class TranspositionCache {
+    private static final int SEGMENTS = 16;
+    /** Folded into the key of rankAll entries so both ranking modes can share a cache. */
+    private static final long RANK_ALL_SALT = 0xD6E8FEB86659FD93L;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits       = new LongAdder();
+    private final LongAdder misses     = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder evictions  = new LongAdder();
+
+    private static final class Entry {
+        final long[] candidates;
+        final long[] guessed;
+        final boolean rankAll;
+        final double bestMiles;
+        final int k;
+        final int[] idx;
+        final double[] score;
+
+        Entry(long[] candidates, long[] guessed, boolean rankAll, double bestMiles,
+              int k, int[] idx, double[] score) {
+            this.candidates = candidates;
+            this.guessed    = guessed;
+            this.rankAll    = rankAll;
+            this.bestMiles  = bestMiles;
+            this.k          = k;
+            this.idx        = idx;
+            this.score      = score;
+        }
+
+        boolean matches(long[] candidates, long[] guessed, boolean rankAll, double bestMiles) {
+            return this.rankAll == rankAll
+                    && Double.compare(this.bestMiles, bestMiles) == 0
+                    && Arrays.equals(this.candidates, candidates)
+                    && Arrays.equals(this.guessed, guessed);
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<Long, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        final ReentrantLock lock = new ReentrantLock();
+        final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    /** @param capacity maximum number of positions kept */
+    public TranspositionCache(int capacity) {
+        if (capacity < SEGMENTS) throw new IllegalArgumentException("capacity must be at least " + SEGMENTS);
+        for (int s = 0; s < SEGMENTS; s++) segments[s] = new Segment(capacity / SEGMENTS);
+    }
+
+    private static long key(long hash, boolean rankAll) {
+        return rankAll ? hash ^ RANK_ALL_SALT : hash;
+    }
+
+    private Segment segment(long key) {
+        return segments[(int) (key >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Copies the cached suggestions for a position into outIdx/outScore.
+     *
+     * @param hash       {@link CandidateManager#stateHash()} of the position
+     * @param candidates the position's candidate bitset
+     * @param guessed    the position's guessed bitset
+     * @param rankAll    whether the ranking considered non-candidate guesses
+     * @param bestMiles  the position's best reading if rankAll, else ignored
+     * @param k          suggestions wanted
+     * @return the number of suggestions written, or -1 on a miss
+     */
+    public int lookup(long hash, long[] candidates, long[] guessed, boolean rankAll, double bestMiles,
+                      int k, int[] outIdx, double[] outScore) {
+        long key = key(hash, rankAll);
+        if (!rankAll) bestMiles = 0;
+        Segment seg = segment(key);
+        seg.lock.lock();
+        try {
+            Entry e = seg.get(key);
+            if (e != null && e.k >= k && e.matches(candidates, guessed, rankAll, bestMiles)) {
+                int count = Math.min(k, e.idx.length);
+                System.arraycopy(e.idx, 0, outIdx, 0, count);
+                System.arraycopy(e.score, 0, outScore, 0, count);
+                hits.increment();
+                return count;
+            }
+            if (e != null && !e.matches(candidates, guessed, rankAll, bestMiles)) collisions.increment();
+            misses.increment();
+            return -1;
+        } finally {
+            seg.lock.unlock();
+        }
+    }
+
+    /**
+     * Remembers the ranking of a position, replacing any entry with the same hash.
+     *
+     * @param k     how many suggestions were asked for
+     * @param count how many were produced (≤ k)
+     */
+    public void store(long hash, long[] candidates, long[] guessed, boolean rankAll, double bestMiles,
+                      int k, int count, int[] idx, double[] score) {
+        Entry e = new Entry(candidates.clone(), guessed.clone(), rankAll, rankAll ? bestMiles : 0, k,
+                Arrays.copyOf(idx, count), Arrays.copyOf(score, count));
+        long key = key(hash, rankAll);
+        Segment seg = segment(key);
+        seg.lock.lock();
+        try {
+            seg.put(key, e);
+        } finally {
+            seg.lock.unlock();
+        }
+    }
+
+    /** @return the number of positions currently cached */
+    public int size() {
+        int size = 0;
+        for (Segment seg : segments) {
+            seg.lock.lock();
+            try {
+                size += seg.size();
+            } finally {
+                seg.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** @return lookups whose hash matched an entry for a different position */
+    public long collisions() {
+        return collisions.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /** @return hits / lookups, or 0 before the first lookup */
+    public double hitRate() {
+        long h = hits(), total = h + misses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("transposition cache: size=%d hits=%d misses=%d (%.1f%% hit) collisions=%d evictions=%d",
+                size(), hits(), misses(), 100 * hitRate(), collisions(), evictions());
+    }
+}
@@ -0,0 +1,45 @@
+// CandidatesFixture.java
+
+import globle.bench.Fixtures;
+
+public class CandidatesFixture implements Fixtures.Candidates {
+    /** Readings cycled through; a power of two so the index is a mask. */
+    private static final int READINGS = 1 << 10;
+
+    private CandidateManager mgr;
+    private int[] guesses;
+    private double[] miles;
+
+    @Override
+    public void setUp(int n) {
+        Gazetteer places = new Gazetteer(n);
+        DistanceMatrix D   = places.distances();
+        AdjacencyGraph adj = AdjacencyGraph.build(places.countries(), Gazetteer.NEIGHBOR_K);
+        // No DistanceIndex: at 8n² bytes it does not scale, so readings filter by scanning
+        mgr = new CandidateManager(n, D, adj, Gazetteer.TOLERANCE_MILES);
+
+        int[] pairs = places.randomPairs(READINGS);
+        guesses = new int[READINGS];
+        miles   = new double[READINGS];
+        for (int r = 0; r < READINGS; r++) {
+            guesses[r] = pairs[2 * r];
+            miles[r]   = D.get(pairs[2 * r], pairs[2 * r + 1]) / Gazetteer.KM_PER_MILE;
+        }
+    }
+
+    @Override
+    public void snapshotRestore() {
+        mgr.snapshot();
+        mgr.restore();
+    }
+
+    @Override
+    public int applyFeedback(int i) {
+        int r = i & (READINGS - 1);
+        mgr.snapshot();
+        mgr.applyFeedback(guesses[r], false, miles[r]);
+        int left = mgr.candidateCount();
+        mgr.restore();
+        return left;
+    }
+}
@@ -0,0 +1,26 @@
+// EncodingFixture.java
+
+import globle.bench.Fixtures;
+
+public class EncodingFixture implements Fixtures.Encoding {
+    /** Pairs cycled through; a power of two so the index is a mask. */
+    private static final int PAIRS = 1 << 12;
+
+    private DistanceMatrix D;
+    private AdjacencyGraph adj;
+    private int[] pairs;
+
+    @Override
+    public void setUp(int n) {
+        Gazetteer places = new Gazetteer(n);
+        D     = places.distances();
+        adj   = AdjacencyGraph.build(places.countries(), Gazetteer.NEIGHBOR_K);
+        pairs = places.randomPairs(PAIRS);
+    }
+
+    @Override
+    public int encode(int i) {
+        int p = 2 * (i & (PAIRS - 1));
+        return FeedbackEncoding.encode(pairs[p], pairs[p + 1], D, adj, Gazetteer.LAMBDA_KM);
+    }
+}
@@ -0,0 +1,26 @@
+// GameFixture.java
+
+import globle.bench.Fixtures;
+
+public class GameFixture implements Fixtures.Game {
+    private int n;
+    private SolverEngine engine;
+    private SolverEngine.Session game;
+
+    @Override
+    public void setUp(int n) {
+        Gazetteer places = new Gazetteer(n);
+        this.n      = n;
+        this.engine = new SolverEngine(places.countries(), Gazetteer.NEIGHBOR_K,
+                Gazetteer.TOLERANCE_MILES, Gazetteer.LAMBDA_KM)
+                .withIncrementalScoring(true)
+                .withParallelRanking(false);
+        this.game   = engine.newSession();
+    }
+
+    @Override
+    public int play(int i) {
+        game.reset();
+        return GameSimulator.play(engine, game, Math.floorMod(i, n));
+    }
+}
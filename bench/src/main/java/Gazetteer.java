@@ -0,0 +1,62 @@
+// Gazetteer.java
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic country lists for benchmarking at sizes no real gazetteer has:
+ * n points spread uniformly over the sphere, reproducible for a given n.
+ */
+public final class Gazetteer {
+    /** Largest n given a dense DistanceMatrix; above it, a TiledDistanceMatrix. */
+    static final int DENSE_LIMIT = 16_000;
+    static final int NEIGHBOR_K = 6;
+    static final double TOLERANCE_MILES = 400.0;
+    static final double LAMBDA_KM = 5000.0;
+    static final double KM_PER_MILE = 1.60934;
+
+    final double[] lat;
+    final double[] lon;
+
+    /** @param n number of points; the seed is n, so equal sizes give equal gazetteers */
+    Gazetteer(int n) {
+        Random rnd = new Random(n);
+        lat = new double[n];
+        lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            // Uniform in sin(latitude), so points do not bunch at the poles
+            lat[i] = Math.toDegrees(Math.asin(2 * rnd.nextDouble() - 1));
+            lon[i] = 360 * rnd.nextDouble() - 180;
+        }
+    }
+
+    int size() {
+        return lat.length;
+    }
+
+    List<Country> countries() {
+        List<Country> countries = new ArrayList<>(lat.length);
+        for (int i = 0; i < lat.length; i++) countries.add(new Country("P" + i, lat[i], lon[i]));
+        return countries;
+    }
+
+    /** @return dense distances up to {@link #DENSE_LIMIT} points, tiled ones with a 256 MB cache above */
+    DistanceMatrix distances() {
+        return size() <= DENSE_LIMIT
+                ? DistanceMatrix.fromCoordinates(lat, lon)
+                : new TiledDistanceMatrix(lat, lon, 64, 256L << 20);
+    }
+
+    /** @return pairs[2i], pairs[2i+1] = count random distinct (guess, target) pairs */
+    int[] randomPairs(int count) {
+        Random rnd = new Random(~size());
+        int[] pairs = new int[2 * count];
+        for (int i = 0; i < count; i++) {
+            int g = rnd.nextInt(size()), t = rnd.nextInt(size() - 1);
+            pairs[2 * i]     = g;
+            pairs[2 * i + 1] = t >= g ? t + 1 : t;
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,25 @@
+// ModelFixture.java
+
+import globle.bench.Fixtures;
+import java.util.List;
+
+public class ModelFixture implements Fixtures.Model {
+    private Gazetteer places;
+    private List<Country> countries;
+
+    @Override
+    public void setUp(int n) {
+        places    = new Gazetteer(n);
+        countries = places.countries();
+    }
+
+    @Override
+    public Object distanceMatrix() {
+        return DistanceMatrix.fromCoordinates(places.lat, places.lon);
+    }
+
+    @Override
+    public Object adjacencyGraph() {
+        return AdjacencyGraph.build(countries, Gazetteer.NEIGHBOR_K);
+    }
+}
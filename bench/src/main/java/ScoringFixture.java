@@ -0,0 +1,39 @@
+// ScoringFixture.java
+
+import globle.bench.Fixtures;
+
+public class ScoringFixture implements Fixtures.Scoring {
+    private int n;
+    private FeedbackTable table;
+    private int[] all;
+    private int[] shrunk;
+    private int shrunkCount;
+    private final int[] hist = new int[FeedbackTable.CODE_COUNT];
+
+    @Override
+    public void setUp(int n) {
+        Gazetteer places = new Gazetteer(n);
+        DistanceMatrix D   = places.distances();
+        AdjacencyGraph adj = AdjacencyGraph.build(places.countries(), Gazetteer.NEIGHBOR_K);
+        this.n     = n;
+        this.table = FeedbackTable.build(D, adj, Gazetteer.LAMBDA_KM);
+
+        CandidateManager mgr = new CandidateManager(n, D, adj, Gazetteer.TOLERANCE_MILES);
+        all = new int[n];
+        mgr.copyCandidates(all);
+        // The candidates a first reading leaves: guess 0 with target 1
+        mgr.applyFeedback(0, adj.isAdjacent(0, 1), D.get(0, 1) / Gazetteer.KM_PER_MILE);
+        shrunk      = new int[n];
+        shrunkCount = mgr.copyCandidates(shrunk);
+    }
+
+    @Override
+    public double scoreFull(int i) {
+        return EntropyCalculator.score(Math.floorMod(i, n), all, n, table, hist);
+    }
+
+    @Override
+    public double scoreShrunk(int i) {
+        return EntropyCalculator.score(Math.floorMod(i, n), shrunk, shrunkCount, table, hist);
+    }
+}
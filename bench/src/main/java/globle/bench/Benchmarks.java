@@ -0,0 +1,41 @@
+// Benchmarks.java
+package globle.bench;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of benchmarks.jar: the standard JMH command line, with the GC
+ * profiler always on so every result comes with its allocation rate
+ * (gc.alloc.rate.norm = bytes allocated per operation).
+ *
+ * <pre>
+ *   java -jar bench/target/benchmarks.jar                  # everything
+ *   java -jar bench/target/benchmarks.jar Scoring -p n=1000
+ * </pre>
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws Exception {
+        if (!profilesGc(args)) {
+            args = Arrays.copyOf(args, args.length + 2);
+            args[args.length - 2] = "-prof";
+            args[args.length - 1] = "gc";
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    /** @return true if a -prof option (as "-prof gc" or "-prof=gc", with or without ":options") names the GC profiler */
+    static boolean profilesGc(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String value;
+            if (args[i].equals("-prof") && i + 1 < args.length) {
+                value = args[++i];
+            } else if (args[i].startsWith("-prof=")) {
+                value = args[i].substring("-prof=".length());
+            } else {
+                continue;
+            }
+            if (value.equals("gc") || value.startsWith("gc:")) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+// CandidateBench.java
+package globle.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CandidateManager's turn: snapshot and restore alone, and with a distance
+ * reading applied in between, as a submit followed by an undo does. Above
+ * the dense limit the distances come from a TiledDistanceMatrix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class CandidateBench {
+    @Param({"1000", "10000", "100000"})
+    int n;
+    Fixtures.Candidates fixture;
+    int i;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = Fixtures.load(Fixtures.Candidates.class);
+        fixture.setUp(n);
+    }
+
+    @Benchmark
+    public void snapshotRestore() {
+        fixture.snapshotRestore();
+    }
+
+    @Benchmark
+    public int applyFeedback() {
+        return fixture.applyFeedback(i++);
+    }
+}
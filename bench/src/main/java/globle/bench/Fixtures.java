@@ -0,0 +1,84 @@
+// Fixtures.java
+package globle.bench;
+
+/**
+ * The operations each benchmark measures, one interface per benchmark class.
+ *
+ * JMH refuses benchmark classes in the default package, and the solver lives
+ * there, where no named package can reference it. So every benchmark drives
+ * the solver through one of these interfaces, implemented by the
+ * default-package class named after it (Model → ModelFixture, and so on) and
+ * loaded once per trial. Each call site sees a single implementation, so the
+ * interface call is inlined and costs nothing measurable.
+ *
+ * Setup takes the dataset size; fixtures generate a seeded synthetic
+ * gazetteer of that many points (see Gazetteer).
+ */
+public final class Fixtures {
+    private Fixtures() {
+    }
+
+    /** Building the shared model from coordinates. */
+    public interface Model {
+        void setUp(int n);
+
+        /** @return a freshly built DistanceMatrix */
+        Object distanceMatrix();
+
+        /** @return a freshly built k-nearest AdjacencyGraph */
+        Object adjacencyGraph();
+    }
+
+    /** Encoding one (guess, target) pair into a feedback code. */
+    public interface Encoding {
+        void setUp(int n);
+
+        /** @return the code of the i-th pre-drawn random pair */
+        int encode(int i);
+    }
+
+    /** Entropy of one guess over a candidate set, via the FeedbackTable. */
+    public interface Scoring {
+        void setUp(int n);
+
+        /** @return the entropy of guess i mod n over every country */
+        double scoreFull(int i);
+
+        /** @return the entropy of guess i mod n over the candidates left after one reading */
+        double scoreShrunk(int i);
+    }
+
+    /** CandidateManager's per-turn operations. */
+    public interface Candidates {
+        void setUp(int n);
+
+        /** Snapshots and immediately restores the full candidate set. */
+        void snapshotRestore();
+
+        /**
+         * Snapshots, applies the i-th pre-drawn distance reading to the full
+         * candidate set, and restores.
+         *
+         * @return the number of candidates the reading left
+         */
+        int applyFeedback(int i);
+    }
+
+    /** A whole game, as {@code GameSimulator} plays it. */
+    public interface Game {
+        void setUp(int n);
+
+        /** @return the guesses needed to find target i mod n, or -1 if the game failed */
+        int play(int i);
+    }
+
+    /** @return a new instance of the default-package fixture implementing type */
+    static <T> T load(Class<T> type) {
+        String name = type.getSimpleName() + "Fixture";
+        try {
+            return type.cast(Class.forName(name).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load benchmark fixture " + name, e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+// GameBench.java
+package globle.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One whole simulated game per operation, cycling through the targets, on
+ * a serial incremental-scoring engine as GameSimulator runs it. Model
+ * construction happens once per trial and is not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class GameBench {
+    @Param({"250", "1000", "2000"})
+    int n;
+    Fixtures.Game fixture;
+    int i;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = Fixtures.load(Fixtures.Game.class);
+        fixture.setUp(n);
+    }
+
+    @Benchmark
+    public int fullGame() {
+        return fixture.play(i++);
+    }
+}
@@ -0,0 +1,54 @@
+// ModelBench.java
+package globle.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Model construction: the dense distance triangle (n² / 2 floats, so sizes
+ * stop where it no longer fits comfortably) and the k-nearest adjacency
+ * graph (spatial-index queries, up to 100k points).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ModelBench {
+
+    @State(Scope.Benchmark)
+    public static class Dense {
+        @Param({"1000", "4000", "16000"})
+        int n;
+        Fixtures.Model fixture;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fixture = Fixtures.load(Fixtures.Model.class);
+            fixture.setUp(n);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Sparse {
+        @Param({"1000", "10000", "100000"})
+        int n;
+        Fixtures.Model fixture;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fixture = Fixtures.load(Fixtures.Model.class);
+            fixture.setUp(n);
+        }
+    }
+
+    @Benchmark
+    public Object distanceMatrix(Dense s) {
+        return s.fixture.distanceMatrix();
+    }
+
+    @Benchmark
+    public Object adjacencyGraph(Sparse s) {
+        return s.fixture.adjacencyGraph();
+    }
+}
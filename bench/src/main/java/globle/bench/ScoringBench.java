@@ -0,0 +1,63 @@
+// ScoringBench.java
+package globle.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The ranking inner loops: encoding one (guess, target) pair, and the
+ * entropy of one guess over every country or over the candidates left after
+ * one reading. Scoring needs the n² FeedbackTable, so its sizes stop lower.
+ * Encoding stops at the dense limit: random pairs from a TiledDistanceMatrix
+ * would miss a tile nearly every call and time tile loads, not encoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ScoringBench {
+
+    @State(Scope.Benchmark)
+    public static class Pairs {
+        @Param({"1000", "10000", "16000"})
+        int n;
+        Fixtures.Encoding fixture;
+        int i;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fixture = Fixtures.load(Fixtures.Encoding.class);
+            fixture.setUp(n);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Table {
+        @Param({"1000", "4000"})
+        int n;
+        Fixtures.Scoring fixture;
+        int i;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fixture = Fixtures.load(Fixtures.Scoring.class);
+            fixture.setUp(n);
+        }
+    }
+
+    @Benchmark
+    public int encode(Pairs s) {
+        return s.fixture.encode(s.i++);
+    }
+
+    @Benchmark
+    public double scoreFull(Table s) {
+        return s.fixture.scoreFull(s.i++);
+    }
+
+    @Benchmark
+    public double scoreShrunk(Table s) {
+        return s.fixture.scoreShrunk(s.i++);
+    }
+}
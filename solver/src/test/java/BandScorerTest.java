@@ -0,0 +1,66 @@
+// BandScorerTest.java
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** The cheap bound must never undercut the exact score, or pruning would drop the best guess. */
+class BandScorerTest {
+    private static final double TOLERANCE_MILES = 400.0;
+    private static final double KM_PER_MILE = 1.60934;
+
+    private final List<Country> places = RandomPlaces.of(400, 21);
+    private final DistanceMatrix D = new DistanceMatrix(places);
+    private final AdjacencyGraph adj = AdjacencyGraph.build(places, 6);
+    private final DistanceIndex index = DistanceIndex.build(D);
+    private final BandScorer scorer = new BandScorer(index, D, adj, TOLERANCE_MILES);
+
+    @Test
+    void boundCoversScoreWithUniformWeights() {
+        playAndCheck(null, 1);
+    }
+
+    @Test
+    void boundCoversScoreWithWeights() {
+        Random rnd = new Random(2);
+        float[] weights = new float[places.size()];
+        // Some zero weights, as a posterior leaves for ruled-out countries
+        for (int i = 0; i < weights.length; i++) weights[i] = rnd.nextInt(5) == 0 ? 0f : rnd.nextFloat();
+        playAndCheck(weights, 3);
+    }
+
+    /** Plays games to random targets with random guesses, checking every guess at every position. */
+    private void playAndCheck(float[] weights, long seed) {
+        Random rnd = new Random(seed);
+        int n = places.size();
+        CandidateManager mgr = new CandidateManager(n, D, adj, index, TOLERANCE_MILES);
+        int[] candidates = new int[n];
+        int positions = 0;
+        for (int game = 0; game < 25; game++) {
+            mgr.reset();
+            int target = rnd.nextInt(n);
+            while (!mgr.isSolved()) {
+                int count = mgr.copyCandidates(candidates);
+                double best = mgr.bestDistanceMiles();
+                for (int g = 0; g < n; g++) {
+                    if (mgr.isGuessed(g)) continue;
+                    double score = scorer.score(g, mgr, weights, best);
+                    double bound = scorer.bound(g, mgr, candidates, count, weights, best);
+                    assertTrue(bound >= score, "guess " + g + " with " + count + " candidates: bound "
+                            + bound + " < score " + score);
+                }
+                positions++;
+
+                // Guess a candidate half the time, so games reach the sparse end
+                int g = rnd.nextBoolean() ? candidates[rnd.nextInt(count)] : rnd.nextInt(n);
+                if (mgr.isGuessed(g)) continue;
+                if (g == target) break;
+                mgr.applyFeedback(g, adj.isAdjacent(g, target), D.get(g, target) / KM_PER_MILE);
+            }
+        }
+        assertTrue(positions > 100, "only " + positions + " positions checked");
+    }
+}
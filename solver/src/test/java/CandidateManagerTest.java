@@ -0,0 +1,97 @@
+// CandidateManagerTest.java
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks the incrementally maintained state hash against one computed from scratch. */
+class CandidateManagerTest {
+    private static final double TOLERANCE_MILES = 400.0;
+    private static final double KM_PER_MILE = 1.60934;
+
+    // Not a multiple of 64, so the last bitset word is partial
+    private final List<Country> places = RandomPlaces.of(300, 9);
+    private final DistanceMatrix D = new DistanceMatrix(places);
+    private final AdjacencyGraph adj = AdjacencyGraph.build(places, 6);
+
+    @Test
+    void hashFollowsRandomPlayWithTheIndex() {
+        randomPlay(new CandidateManager(places.size(), D, adj, DistanceIndex.build(D), TOLERANCE_MILES));
+    }
+
+    @Test
+    void hashFollowsRandomPlayByScanning() {
+        randomPlay(new CandidateManager(places.size(), D, adj, TOLERANCE_MILES));
+    }
+
+    @Test
+    void theOrderOfMovesDoesNotMatter() {
+        CandidateManager a = new CandidateManager(places.size(), D, adj, TOLERANCE_MILES);
+        CandidateManager b = new CandidateManager(places.size(), D, adj, TOLERANCE_MILES);
+        a.markImpossible(3);
+        a.markImpossible(70);
+        b.markImpossible(70);
+        b.markImpossible(3);
+        assertEquals(a.stateHash(), b.stateHash());
+        b.markImpossible(5);
+        assertNotEquals(a.stateHash(), b.stateHash());
+    }
+
+    private void randomPlay(CandidateManager mgr) {
+        Random rnd = new Random(17);
+        CandidateManager copy = new CandidateManager(places.size(), D, adj, TOLERANCE_MILES);
+        assertEquals(fromScratch(mgr), mgr.stateHash());
+        for (int game = 0; game < 200; game++) {
+            mgr.reset();
+            int target = rnd.nextInt(places.size());
+            while (!mgr.isSolved() && mgr.candidateCount() > 0) {
+                int g = rnd.nextInt(places.size());
+                switch (rnd.nextInt(6)) {
+                    case 0 -> mgr.markImpossible(g);
+                    case 1 -> {
+                        // A move that is taken back
+                        mgr.snapshot();
+                        mgr.applyFeedback(g, false, 12_000 * rnd.nextDouble());
+                        assertEquals(fromScratch(mgr), mgr.stateHash());
+                        mgr.restore();
+                    }
+                    case 2 -> {
+                        copy.copyFrom(mgr);
+                        assertEquals(mgr.stateHash(), copy.stateHash());
+                        assertEquals(fromScratch(copy), copy.stateHash());
+                    }
+                    case 3 -> {
+                        // A posterior's support: keep a random subset of the candidates
+                        long[] bits = mgr.candidateWords().clone();
+                        for (int w = 0; w < bits.length; w++) bits[w] &= rnd.nextLong() | rnd.nextLong();
+                        mgr.assignCandidates(bits);
+                    }
+                    default -> {
+                        if (g == target) continue;
+                        mgr.snapshot();
+                        boolean adjacent = adj.isAdjacent(g, target);
+                        mgr.applyFeedback(g, adjacent, D.get(g, target) / KM_PER_MILE);
+                    }
+                }
+                assertEquals(fromScratch(mgr), mgr.stateHash(), "game " + game);
+            }
+            while (mgr.canRestore()) {
+                mgr.restore();
+                assertEquals(fromScratch(mgr), mgr.stateHash(), "game " + game + " unwinding");
+            }
+        }
+    }
+
+    private long fromScratch(CandidateManager mgr) {
+        long hash = 0;
+        for (int i = 0; i < places.size(); i++) {
+            if (mgr.isCandidate(i)) hash ^= CandidateManager.candidateKey(i);
+            if (mgr.isGuessed(i)) hash ^= CandidateManager.guessedKey(i);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,95 @@
+// CountryLoaderTest.java
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** RFC 4180 parsing, including records that straddle the read chunks. */
+class CountryLoaderTest {
+    private static final String HEADER = "Country,Alpha-2 code,Latitude,Longitude\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void skipsTheHeaderAndReadsTheLastTwoColumns() throws IOException {
+        List<Country> cs = load(HEADER + "Chad,TD,15.0,19.0\n  Peru ,PE, -10.0 , -76.0\n");
+        assertEquals(2, cs.size());
+        assertCountry("Chad", 15.0, 19.0, cs.get(0));
+        assertCountry("Peru", -10.0, -76.0, cs.get(1));
+    }
+
+    @Test
+    void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        List<Country> cs = load(HEADER
+                + "\"Korea, Republic of\",KR,37.0,127.5\n"
+                + "\"C\"\"te\",CI,8.0,-5.0\n"
+                + "\"Two\nLines\",XX,1.0,2.0\n"
+                + "\" Padded \",PD,\"3.5\",4.5\n");
+        assertEquals(4, cs.size());
+        assertCountry("Korea, Republic of", 37.0, 127.5, cs.get(0));
+        assertCountry("C\"te", 8.0, -5.0, cs.get(1));
+        assertCountry("Two\nLines", 1.0, 2.0, cs.get(2));
+        assertCountry(" Padded ", 3.5, 4.5, cs.get(3));
+    }
+
+    @Test
+    void crlfAndAMissingFinalLineBreak() throws IOException {
+        List<Country> cs = load("Country,Latitude,Longitude\r\nChad,15.0,19.0\r\n\"Mali\",17.0,-4.0");
+        assertEquals(2, cs.size());
+        assertCountry("Chad", 15.0, 19.0, cs.get(0));
+        assertCountry("Mali", 17.0, -4.0, cs.get(1));
+    }
+
+    @Test
+    void shortRowsAreSkipped() throws IOException {
+        List<Country> cs = load(HEADER + "Nowhere,1.0\n\nChad,TD,15.0,19.0\n");
+        assertEquals(1, cs.size());
+        assertCountry("Chad", 15.0, 19.0, cs.get(0));
+    }
+
+    @Test
+    void badNumbersAreRejected() {
+        assertThrows(NumberFormatException.class, () -> load(HEADER + "Chad,TD,north,19.0\n"));
+    }
+
+    @Test
+    void recordsStraddlingChunks() throws IOException {
+        // Past the 1 MB read chunk, with one quoted name longer than a chunk on its own
+        StringBuilder csv = new StringBuilder(HEADER);
+        int rows = 40_000;
+        for (int i = 0; i < rows; i++) {
+            csv.append("\"Place, number ").append(i).append("\",XX,")
+               .append(i % 90).append(".25,-").append(i % 180).append(".5\n");
+        }
+        String huge = "x\"\"y,".repeat(300_000);
+        csv.append('"').append(huge).append("\",XX,1.0,2.0\n");
+
+        List<Country> cs = load(csv.toString());
+        assertEquals(rows + 1, cs.size());
+        for (int i = 0; i < rows; i += 997) {
+            assertCountry("Place, number " + i, i % 90 + 0.25, -(i % 180) - 0.5, cs.get(i));
+        }
+        assertCountry(huge.replace("\"\"", "\""), 1.0, 2.0, cs.get(rows));
+    }
+
+    private List<Country> load(String csv) throws IOException {
+        Path file = dir.resolve("places.csv");
+        Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+        return CountryLoader.load(file.toString());
+    }
+
+    private static void assertCountry(String name, double lat, double lon, Country actual) {
+        assertEquals(name, actual.getName());
+        assertEquals(lat, actual.getLatitude(), 0.0, name);
+        assertEquals(lon, actual.getLongitude(), 0.0, name);
+    }
+}
@@ -0,0 +1,32 @@
+// RandomPlaces.java
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Reproducible synthetic country lists for the tests. */
+final class RandomPlaces {
+    private RandomPlaces() {
+    }
+
+    /**
+     * @return n points spread uniformly over the sphere; every tenth repeats
+     *         an earlier one, so distance ties occur
+     */
+    static List<Country> of(int n, long seed) {
+        Random rnd = new Random(seed);
+        List<Country> places = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && i % 10 == 0) {
+                Country twin = places.get(rnd.nextInt(i));
+                places.add(new Country("P" + i, twin.getLatitude(), twin.getLongitude()));
+                continue;
+            }
+            // Uniform in sin(latitude), so points do not bunch at the poles
+            double lat = Math.toDegrees(Math.asin(2 * rnd.nextDouble() - 1));
+            double lon = 360 * rnd.nextDouble() - 180;
+            places.add(new Country("P" + i, lat, lon));
+        }
+        return places;
+    }
+}
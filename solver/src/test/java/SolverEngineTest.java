@@ -0,0 +1,68 @@
+// SolverEngineTest.java
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import org.junit.jupiter.api.Test;
+
+/** Name lookup, including the comma aliases, and input checks on a session. */
+class SolverEngineTest {
+    private static final List<Country> NAMES = List.of(
+            new Country("Congo", -1.0, 15.0),
+            new Country("Congo, the Democratic Republic of the", 0.0, 25.0),
+            new Country("Iran, Islamic Republic of", 32.0, 53.0),
+            new Country("Korea, Democratic People's Republic of", 40.0, 127.0),
+            new Country("Korea, Republic of", 37.0, 127.5),
+            new Country("Virgin Islands, British", 18.5, -64.5),
+            new Country("Virgin Islands, U.S.", 18.3333, -64.8333));
+
+    private final ToIntFunction<String> resolver = SolverEngine.nameResolver(NAMES);
+
+    @Test
+    void fullNamesResolveIgnoringCaseAndSpaces() {
+        for (int i = 0; i < NAMES.size(); i++) {
+            assertEquals(i, resolver.applyAsInt(NAMES.get(i).getName()));
+        }
+        assertEquals(4, resolver.applyAsInt("  KOREA, republic OF "));
+        assertEquals(-1, resolver.applyAsInt("Atlantis"));
+    }
+
+    @Test
+    void aUniqueAliasResolves() {
+        assertEquals(2, resolver.applyAsInt("Iran"));
+    }
+
+    @Test
+    void aFullNameBeatsAnAlias() {
+        assertEquals(0, resolver.applyAsInt("congo"));
+    }
+
+    @Test
+    void sharedAliasesResolveToNothing() {
+        assertEquals(-1, resolver.applyAsInt("korea"));
+        assertEquals(-1, resolver.applyAsInt("Virgin Islands"));
+    }
+
+    @Test
+    void theEngineUsesTheSameLookup() {
+        SolverEngine engine = new SolverEngine(NAMES, 2, 400.0, 5000.0);
+        for (String name : List.of("iran", "congo", "korea", "Virgin Islands, U.S.")) {
+            assertEquals(resolver.applyAsInt(name), engine.indexOf(name), name);
+        }
+    }
+
+    @Test
+    void submitRejectsDistancesThatAreNotFiniteOrAreNegative() {
+        SolverEngine engine = new SolverEngine(RandomPlaces.of(50, 5), 6, 400.0, 5000.0);
+        SolverEngine.Session game = engine.newSession();
+        for (double miles : new double[] { Double.NaN, Double.POSITIVE_INFINITY, -1.0 }) {
+            assertThrows(IllegalArgumentException.class, () -> game.submit(0, false, miles));
+        }
+        assertEquals(50, game.candidateCount());
+        // The distance is ignored for an adjacent reading
+        assertEquals(SolverEngine.SUBMIT_OK, game.submit(0, true, Double.NaN));
+    }
+}
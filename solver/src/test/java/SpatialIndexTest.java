@@ -0,0 +1,97 @@
+// SpatialIndexTest.java
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks the k-d tree queries against a brute-force scan over every point. */
+class SpatialIndexTest {
+    private static final int N = 2_000;
+
+    private final List<Country> places = RandomPlaces.of(N, 42);
+    private final SpatialIndex index = new SpatialIndex(places);
+    private final double[][] unit = DistanceMatrix.unitVectors(
+            DistanceMatrix.latitudes(places), DistanceMatrix.longitudes(places));
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random rnd = new Random(7);
+        int[] out = new int[64];
+        double[] scratch = new double[64];
+        for (int trial = 0; trial < 300; trial++) {
+            int q = rnd.nextInt(N);
+            int k = 1 + rnd.nextInt(out.length);
+            int found = index.nearest(q, k, out, scratch);
+            assertEquals(k, found);
+
+            // Ties may be broken either way, so compare the distances rather than the indices
+            double[] expected = bruteForce(q);
+            double[] actual = new double[found];
+            for (int i = 0; i < found; i++) {
+                assertNotEquals(q, out[i]);
+                actual[i] = chord2(q, out[i]);
+            }
+            assertArrayEquals(Arrays.copyOf(expected, k), actual, 0.0, "query " + q + ", k " + k);
+            assertEquals(found, Arrays.stream(out, 0, found).distinct().count(), "duplicate neighbor");
+        }
+    }
+
+    @Test
+    void nearestStopsAtTheOtherPoints() {
+        SpatialIndex small = new SpatialIndex(places.subList(0, 5));
+        int[] out = new int[10];
+        assertEquals(4, small.nearest(2, 10, out, new double[10]));
+        assertEquals(0, small.nearest(2, 0, out, new double[10]));
+    }
+
+    @Test
+    void withinMatchesBruteForce() {
+        Random rnd = new Random(11);
+        int[] out = new int[N];
+        for (int trial = 0; trial < 300; trial++) {
+            int q = rnd.nextInt(N);
+            double radiusKm = trial == 0 ? 0.0 : 3000 * rnd.nextDouble();
+            int found = index.within(q, radiusKm, out);
+
+            double theta = radiusKm / 6371.0;
+            double chord = 2 * Math.sin(theta / 2);
+            int[] expected = new int[N];
+            int count = 0;
+            for (int p = 0; p < N; p++) {
+                if (p != q && chord2(q, p) <= chord * chord) expected[count++] = p;
+            }
+            int[] actual = Arrays.copyOf(out, found);
+            Arrays.sort(actual);
+            assertArrayEquals(Arrays.copyOf(expected, count), actual, "query " + q + ", radius " + radiusKm);
+        }
+    }
+
+    @Test
+    void withinCountsPastTheOutputArray() {
+        int q = 0;
+        int all = index.within(q, 20_100, new int[N]);
+        assertEquals(N - 1, all);
+        assertEquals(N - 1, index.within(q, 20_100, new int[3]));
+    }
+
+    /** @return the squared chord lengths from q to every other point, ascending */
+    private double[] bruteForce(int q) {
+        double[] d = new double[N - 1];
+        for (int p = 0, i = 0; p < N; p++) {
+            if (p != q) d[i++] = chord2(q, p);
+        }
+        Arrays.sort(d);
+        return d;
+    }
+
+    private double chord2(int a, int b) {
+        double dx = unit[0][b] - unit[0][a], dy = unit[1][b] - unit[1][a], dz = unit[2][b] - unit[2][a];
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,82 @@
+// TiledDistanceMatrixTest.java
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/** Checks that tiles computed on demand give exactly the stored distances. */
+class TiledDistanceMatrixTest {
+    private static final int N = 500;
+    private static final int TILE_ROWS = 8;
+
+    private final List<Country> places = RandomPlaces.of(N, 3);
+    private final DistanceMatrix dense = new DistanceMatrix(places);
+
+    @Test
+    void everyEntryMatchesDense() {
+        TiledDistanceMatrix tiled = new TiledDistanceMatrix(places, TILE_ROWS, 1L << 20);
+        float[] row = new float[N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) assertEquals(dense.get(i, j), tiled.get(i, j), 0.0, i + ", " + j);
+            tiled.row(i, row);
+            for (int j = 0; j < N; j++) assertEquals((float) dense.get(i, j), row[j], 0.0f, i + ", " + j);
+        }
+    }
+
+    @Test
+    void countersTrackTheCache() {
+        // Room for three tiles out of 63
+        TiledDistanceMatrix tiled = new TiledDistanceMatrix(places, TILE_ROWS, 3L * 4 * TILE_ROWS * N);
+        assertEquals(3, tiled.tileCapacity());
+        assertEquals(0.0, tiled.tileHitRate());
+
+        tiled.get(0, 1);
+        tiled.get(1, 2);
+        assertEquals(1, tiled.tileMisses());
+        assertEquals(1, tiled.tileHits());
+
+        // Touch five tiles: the last two push out two of the first three
+        for (int t = 1; t < 5; t++) tiled.get(t * TILE_ROWS, 0);
+        assertEquals(5, tiled.tileMisses());
+        assertEquals(2, tiled.tileEvictions());
+        assertEquals(1.0 / 6, tiled.tileHitRate(), 1e-12);
+    }
+
+    @Test
+    void concurrentReadsThroughATinyCache() throws Exception {
+        TiledDistanceMatrix tiled = new TiledDistanceMatrix(places, TILE_ROWS, 3L * 4 * TILE_ROWS * N);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long seed = t;
+                results.add(pool.submit(() -> {
+                    Random rnd = new Random(seed);
+                    float[] row = new float[N];
+                    int mismatches = 0;
+                    for (int k = 0; k < 5_000; k++) {
+                        int i = rnd.nextInt(N), j = rnd.nextInt(N);
+                        if (tiled.get(i, j) != dense.get(i, j)) mismatches++;
+                        if (k % 25 == 0) {
+                            tiled.row(i, row);
+                            for (int c = 0; c < N; c++) if (row[c] != (float) dense.get(i, c)) mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            for (Future<Integer> r : results) assertEquals(0, (int) r.get());
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(tiled.tileEvictions() > 0, "the cache never filled");
+    }
+}